@@ -0,0 +1,467 @@
+package MCTS;
+
+import Tools.FindWinner;
+
+/**
+ * The chains and loops of a position, kept up to date as edges are taken and
+ * returned.
+ *
+ * Boxes with exactly two taken edges are joined through their free edges
+ * using a union-find structure without path compression, so each change can
+ * be undone from a log. A component with as many links as boxes is a loop;
+ * any other component is a chain. The number of chains and loops of each
+ * length is kept in chainCounts and loopCounts.
+ *
+ * When a box leaves a component (a third edge is taken), the structure is
+ * marked stale and rebuilt the next time it is read.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class ChainStructure {
+
+	/**
+	 * Marks a log entry for a box which joined the structure.
+	 */
+	private static final int LOG_ADD = -1;
+
+	/**
+	 * Marks a log entry for a link which closed a component into a loop.
+	 */
+	private static final int LOG_LINK = -2;
+
+	/**
+	 * The position whose chains and loops are kept.
+	 */
+	private Position position;
+
+	/**
+	 * The game of the position.
+	 */
+	private DotsAndBoxes game;
+
+	/**
+	 * The parent of each box in the union-find structure.
+	 */
+	private int[] parent;
+
+	/**
+	 * The number of boxes in the component of each root. Boxes which are not
+	 * part of a component have size 0.
+	 */
+	private int[] size;
+
+	/**
+	 * The number of free edges joining boxes of the component of each root.
+	 */
+	private int[] links;
+
+	/**
+	 * Position i is the number of chains of length i.
+	 */
+	public int[] chainCounts;
+
+	/**
+	 * Position i is the number of loops of length i.
+	 */
+	public int[] loopCounts;
+
+	/**
+	 * The root of each log entry.
+	 */
+	private int[] logRoot;
+
+	/**
+	 * The root joined to logRoot by each log entry, or LOG_ADD or LOG_LINK.
+	 */
+	private int[] logChild;
+
+	/**
+	 * The number of log entries.
+	 */
+	private int logSize;
+
+	/**
+	 * The size of the log at the start of each move of the position.
+	 */
+	private int[] moveLog;
+
+	/**
+	 * True if the structure does not match the position.
+	 */
+	private boolean stale;
+
+	/**
+	 * The move at which the structure became stale, or -1 if it cannot be
+	 * restored by taking back moves.
+	 */
+	private int staleSince;
+
+	/**
+	 * The number of moves of the position when the structure was last rebuilt.
+	 * Moves before this cannot be undone from the log.
+	 */
+	private int floor;
+
+	/**
+	 * Constructor for the ChainStructure.
+	 *
+	 * @param position
+	 *            The position whose chains and loops are kept.
+	 */
+	public ChainStructure(Position position) {
+		this.position = position;
+		this.game = position.game;
+
+		int boxes = game.boxEdges.length;
+
+		parent = new int[boxes];
+		size = new int[boxes];
+		links = new int[boxes];
+		chainCounts = new int[boxes + 1];
+		loopCounts = new int[boxes + 1];
+
+		/* each box joins once and each free edge links once */
+		logRoot = new int[2 * boxes + game.edges];
+		logChild = new int[logRoot.length];
+		moveLog = new int[game.edges];
+
+		clear();
+	}
+
+	/**
+	 * Removes every box from the structure.
+	 */
+	public void clear() {
+		for (int i = 0; i < parent.length; i++) {
+			parent[i] = i;
+			size[i] = 0;
+			links[i] = 0;
+		}
+
+		for (int i = 0; i < chainCounts.length; i++) {
+			chainCounts[i] = 0;
+			loopCounts[i] = 0;
+		}
+
+		logSize = 0;
+		stale = false;
+		floor = 0;
+	}
+
+	/**
+	 * Sets this structure to a copy of the structure of another position.
+	 *
+	 * @param chains
+	 *            The structure to copy.
+	 */
+	public void copy(ChainStructure chains) {
+		System.arraycopy(chains.parent, 0, parent, 0, parent.length);
+		System.arraycopy(chains.size, 0, size, 0, size.length);
+		System.arraycopy(chains.links, 0, links, 0, links.length);
+		System.arraycopy(chains.chainCounts, 0, chainCounts, 0, chainCounts.length);
+		System.arraycopy(chains.loopCounts, 0, loopCounts, 0, loopCounts.length);
+		System.arraycopy(chains.logRoot, 0, logRoot, 0, chains.logSize);
+		System.arraycopy(chains.logChild, 0, logChild, 0, chains.logSize);
+		System.arraycopy(chains.moveLog, 0, moveLog, 0, moveLog.length);
+
+		logSize = chains.logSize;
+		stale = chains.stale;
+		staleSince = chains.staleSince;
+		floor = chains.floor;
+	}
+
+	/**
+	 * Updates the structure after an edge is taken. The box counts of the
+	 * position must already include the edge.
+	 *
+	 * @param edge
+	 *            The edge taken.
+	 * @param move
+	 *            The index of the move in the history of the position.
+	 */
+	void make(int edge, int move) {
+		if (stale) {
+			return;
+		}
+
+		moveLog[move] = logSize;
+
+		int[] boxes = game.edgeBoxes[edge];
+
+		/* a box with a third edge leaves its component */
+		for (int i = 0; i < boxes.length; i++) {
+			if (position.boxCounts[boxes[i]] == 3) {
+				stale = true;
+				staleSince = move;
+				return;
+			}
+		}
+
+		for (int i = 0; i < boxes.length; i++) {
+			if (position.boxCounts[boxes[i]] == 2) {
+				add(boxes[i]);
+			}
+		}
+	}
+
+	/**
+	 * Updates the structure after an edge is returned.
+	 *
+	 * @param move
+	 *            The index of the move taken back in the history of the
+	 *            position.
+	 */
+	void unmake(int move) {
+		if (stale) {
+			if (staleSince == move) {
+				undo(moveLog[move]);
+				stale = false;
+			}
+
+			return;
+		}
+
+		if (move < floor) {
+			stale = true;
+			staleSince = -1;
+			return;
+		}
+
+		undo(moveLog[move]);
+	}
+
+	/**
+	 * Rebuilds the structure if it does not match the position.
+	 */
+	public void update() {
+		if (!stale) {
+			return;
+		}
+
+		clear();
+
+		for (int i = 0; i < parent.length; i++) {
+			if (position.boxCounts[i] == 2) {
+				add(i);
+			}
+		}
+
+		/* moves before this cannot be taken back from the log */
+		logSize = 0;
+		floor = position.moves;
+	}
+
+	/**
+	 * Gets the number of boxes in the component of a box.
+	 *
+	 * @param box
+	 *            The box.
+	 * @return The length of the chain or loop containing the box, or 0 if
+	 *         the box does not have exactly two edges.
+	 */
+	public int getLength(int box) {
+		update();
+
+		return size[find(box)];
+	}
+
+	/**
+	 * Gets the key of the chains and loops used by the FindWinner cache.
+	 *
+	 * @return The key, or FindWinner.NO_KEY if the components do not fit in
+	 *         a key.
+	 * @see FindWinner#getKey(int[], int[])
+	 */
+	public long getKey() {
+		update();
+
+		long key = 0;
+		int components = 0;
+
+		for (int i = 1; i < chainCounts.length; i++) {
+			if (chainCounts[i] > 0 && i > 63) {
+				return FindWinner.NO_KEY;
+			}
+
+			for (int j = 0; j < chainCounts[i]; j++) {
+				key = (key << 6) | i;
+				components++;
+			}
+		}
+
+		key <<= 6;
+
+		for (int i = 1; i < loopCounts.length; i++) {
+			if (loopCounts[i] > 0 && i > 63) {
+				return FindWinner.NO_KEY;
+			}
+
+			for (int j = 0; j < loopCounts[i]; j++) {
+				key = (key << 6) | i;
+				components++;
+			}
+		}
+
+		if (components > 9) {
+			return FindWinner.NO_KEY;
+		}
+
+		return key;
+	}
+
+	/**
+	 * Adds a box with two edges, joining it to the boxes with two edges
+	 * across its free edges.
+	 *
+	 * @param box
+	 *            The box to add.
+	 */
+	private void add(int box) {
+		parent[box] = box;
+		size[box] = 1;
+		links[box] = 0;
+		chainCounts[1]++;
+		log(box, LOG_ADD);
+
+		int[] boxEdges = game.boxEdges[box];
+
+		for (int b = 0; b < boxEdges.length; b++) {
+			if (position.isTaken(boxEdges[b])) {
+				continue;
+			}
+
+			int[] neighbors = game.edgeBoxes[boxEdges[b]];
+
+			for (int n = 0; n < neighbors.length; n++) {
+				if (neighbors[n] != box && size[neighbors[n]] > 0) {
+					join(box, neighbors[n]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Joins the components of two boxes which share a free edge.
+	 *
+	 * @param first
+	 *            The first box.
+	 * @param second
+	 *            The second box.
+	 */
+	private void join(int first, int second) {
+		int root = find(first);
+		int child = find(second);
+
+		/* the edge closes a loop */
+		if (root == child) {
+			remove(root);
+			links[root]++;
+			insert(root);
+			log(root, LOG_LINK);
+			return;
+		}
+
+		if (size[root] < size[child]) {
+			int temp = root;
+			root = child;
+			child = temp;
+		}
+
+		remove(root);
+		remove(child);
+		parent[child] = root;
+		size[root] += size[child];
+		links[root] += links[child] + 1;
+		insert(root);
+		log(root, child);
+	}
+
+	/**
+	 * Undoes log entries until the log has the given size.
+	 *
+	 * @param target
+	 *            The size of the log to return to.
+	 */
+	private void undo(int target) {
+		while (logSize > target) {
+			logSize--;
+			int root = logRoot[logSize];
+			int child = logChild[logSize];
+
+			remove(root);
+
+			if (child == LOG_ADD) {
+				size[root] = 0;
+			} else if (child == LOG_LINK) {
+				links[root]--;
+				insert(root);
+			} else {
+				parent[child] = child;
+				size[root] -= size[child];
+				links[root] -= links[child] + 1;
+				insert(root);
+				insert(child);
+			}
+		}
+	}
+
+	/**
+	 * Finds the root of the component of a box.
+	 *
+	 * @param box
+	 *            The box.
+	 * @return The root of the component.
+	 */
+	private int find(int box) {
+		while (parent[box] != box) {
+			box = parent[box];
+		}
+
+		return box;
+	}
+
+	/**
+	 * Counts the component of a root in chainCounts or loopCounts.
+	 *
+	 * @param root
+	 *            The root of the component.
+	 */
+	private void insert(int root) {
+		if (links[root] == size[root]) {
+			loopCounts[size[root]]++;
+		} else {
+			chainCounts[size[root]]++;
+		}
+	}
+
+	/**
+	 * Removes the component of a root from chainCounts or loopCounts.
+	 *
+	 * @param root
+	 *            The root of the component.
+	 */
+	private void remove(int root) {
+		if (links[root] == size[root]) {
+			loopCounts[size[root]]--;
+		} else {
+			chainCounts[size[root]]--;
+		}
+	}
+
+	/**
+	 * Adds an entry to the log.
+	 *
+	 * @param root
+	 *            The root changed.
+	 * @param child
+	 *            The root joined to root, or LOG_ADD or LOG_LINK.
+	 */
+	private void log(int root, int child) {
+		logRoot[logSize] = root;
+		logChild[logSize] = child;
+		logSize++;
+	}
+}
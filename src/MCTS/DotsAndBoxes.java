@@ -2,6 +2,7 @@ package MCTS;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Random;
 
 /**
  * A Dots and Boxes MCTSGame.
@@ -48,18 +49,30 @@ public class DotsAndBoxes extends MCGame {
 	 */
 	public int[][] boxEdges;
 	
+	/** A 2D array which lists the edges of a given box as a bitmask.
+	 *  Position i contains the words of a bitmask in which bit (e % 64) of word (e / 64) is set for each edge e of box i.
+	 */
+	public long[][] boxMasks;
+	
+	/** An array of random keys used to hash positions (Zobrist hashing).
+	 *  The hash of a position is the exclusive or of the keys of its taken edges.
+	 */
+	public long[] zobristKeys;
+	
 	/** An array which maps each edge on the board to another edge after rotation.
 	 *  Position i represents the number of the edge that edge i will move to after a 90 degree rotation.
 	 */
-	public static int[] rotationMap;
+	public int[] rotationMap;
 	
 	
 	/** An array which maps each edge on the board to another edge after reflection.
 	 *  Position i represents the number of the edge that edge i will move to after a reflection across the y axis.
 	 */
-	public static int[] reflectionMap;
+	public int[] reflectionMap;
 	
-	public static GameState terminalState;
+	/** The state in which every edge of the board is taken.
+	 */
+	public GameState terminalState;
 	
 	/**
 	 * Creates an array representing a map of edges to edges when rotating the board 90 degrees.
@@ -166,13 +179,21 @@ public class DotsAndBoxes extends MCGame {
 		
 		if(height != width && asymmetrical){
 			System.out.println("Symmetries can only be removed on a square board.");
-			asymmetrical = false;
+			this.asymmetrical = false;
 		}
 		
 		edges = (height * (width + 1)) + (width * (height + 1));
 		
 		initializeEdgeToBoxMaps();
 		
+		/* the same keys are used for every game of this size */
+		Random random = new Random(edges);
+		zobristKeys = new long[edges];
+		
+		for(int i = 0; i < edges; i++){
+			zobristKeys[i] = random.nextLong();
+		}
+		
 		if (edges > 60) {
 			terminalState = new GameState(new BigInteger("2").pow(edges).subtract(new BigInteger("1")));
 		} else {
@@ -186,6 +207,7 @@ public class DotsAndBoxes extends MCGame {
 	private void initializeEdgeToBoxMaps(){
 		edgeBoxes = new int[edges][2];
 		boxEdges = new int[height * width][4];
+		boxMasks = new long[height * width][];
 		
 		for(int i = 0; i < edgeBoxes.length; i++){
 			edgeBoxes[i][0] = -1;
@@ -205,6 +227,11 @@ public class DotsAndBoxes extends MCGame {
 			int[] square = {first, second, third, fourth};
 			boxEdges[i] = square;
 			
+			boxMasks[i] = new long[(edges + 63) / 64];
+			for(int e : square){
+				boxMasks[i][e / 64] |= 1L << (e % 64);
+			}
+			
 			if(edgeBoxes[first][0] == -1){
 				edgeBoxes[first][0] = i;
 			}
@@ -273,11 +300,15 @@ public class DotsAndBoxes extends MCGame {
 	public int completedBoxesForEdge(int edge, GameState state){
 		int[] boxes = boxPerEdge(edge, state);
 		
-		if(boxes.length == 1){
-			return boxes[0] == 4 ? 1 : 0;
-		} else {
-			return boxes[0] + boxes[1];
+		int completed = 0;
+		
+		for(int i = 0; i < boxes.length; i++){
+			if(boxes[i] == 4){
+				completed++;
+			}
 		}
+		
+		return completed;
 	}
 	
 	/**
@@ -305,14 +336,13 @@ public class DotsAndBoxes extends MCGame {
 					continue;
 				}
 				
-				//edge not found
+				//edge is a leading zero
 				if(s.length() < edges - boxEdges[index][b]){
-					break;
+					continue;
 				}
 				
 				if(s.charAt(boxEdges[index][b] - (edges - s.length())) == '1'){
 					boxes[i]++;
-					break;
 				}
 			}
 		}
@@ -365,11 +395,11 @@ public class DotsAndBoxes extends MCGame {
 	 * @param state The state of the board.
 	 * @param width The width of the board (in boxes).
 	 * @param height The height of the board (in boxes).
-	 * @return A 2D array or all the chains and loops on a board.
+	 * @return A 2D array or all the chains and loops on a board. Unused positions of each array are 0.
 	 */
 	public int[][] getChainsAndLoops(GameState state, int width, int height){
 		int[][] chainsAndLoops = new int[2][];
-		int[] chains = new int[(width * height) / 2];
+		int[] chains = new int[width * height];
 		int[] loops = new int[(width * height) / 4];
 		
 		int board[][] = stateToBoard(state);
@@ -415,6 +445,11 @@ public class DotsAndBoxes extends MCGame {
 					
 					length = measureChain(board, visited, i, j, 0, false);
 					
+					//finished boxes are not part of a chain
+					if(length == 0){
+						continue;
+					}
+					
 					if(length < 0){
 						loops[lIndex] = -length;
 						lIndex++;
@@ -558,6 +593,86 @@ public class DotsAndBoxes extends MCGame {
 		}
 	}
 	
+	/**
+	 * Gets the possible actions for the game from a given state, ordered by a static evaluation of each edge.
+	 * Edges which complete a box come first, followed by safe edges (which give no box its third side),
+	 * followed by the remaining edges. The original order is kept within each group.
+	 * 
+	 * @param  state The state before the move is selected.
+	 * @return An integer array representing all possible moves from the given state.
+	 */
+	public int[] getOrderedActions(GameState state) {
+		int[] actions = getActions(state);
+		long[] bits = getEdgeBits(state);
+		
+		/* count the taken edges of each box */
+		int[] boxes = new int[boxMasks.length];
+		for(int i = 0; i < boxes.length; i++){
+			for(int w = 0; w < bits.length; w++){
+				boxes[i] += Long.bitCount(bits[w] & boxMasks[i][w]);
+			}
+		}
+		
+		int[] ordered = new int[actions.length];
+		int index = 0;
+		
+		/* captures first, then safe edges, then the rest */
+		for(int priority = 0; priority < 3; priority++){
+			for(int i = 0; i < actions.length; i++){
+				if(getEdgePriority(actions[i], boxes) == priority){
+					ordered[index] = actions[i];
+					index++;
+				}
+			}
+		}
+		
+		return ordered;
+	}
+	
+	/**
+	 * Gets the static priority of an edge. 0 for an edge which completes a box, 1 for a safe edge
+	 * and 2 for an edge which gives a box its third side.
+	 * 
+	 * @param  edge The edge to evaluate.
+	 * @param  boxes The number of taken edges for each box.
+	 * @return The priority of the edge.
+	 */
+	private int getEdgePriority(int edge, int[] boxes){
+		int priority = 1;
+		
+		for(int box : edgeBoxes[edge]){
+			if(boxes[box] == 3){
+				return 0;
+			}
+			
+			if(boxes[box] == 2){
+				priority = 2;
+			}
+		}
+		
+		return priority;
+	}
+	
+	/**
+	 * Gets the taken edges of a state as a bitmask. Bit (e % 64) of word (e / 64) is set if edge e is taken.
+	 * 
+	 * @param  state The state of the board.
+	 * @return The words of the bitmask.
+	 */
+	public long[] getEdgeBits(GameState state){
+		long[] bits = new long[(edges + 63) / 64];
+		
+		for(int i = 0; i < edges; i++){
+			boolean taken = state.bigState != null ? state.bigState.testBit(edges - i - 1) : ((state.longState >>> (edges - i - 1)) & 1) == 1;
+			
+			if(taken){
+				bits[i / 64] |= 1L << (i % 64);
+			}
+		}
+		
+		return bits;
+	}
+	
 	/**
 	 * Gets all the possible actions from the given state. Each free edge is a possible action.
 	 * 
@@ -0,0 +1,369 @@
+package MCTS;
+
+/**
+ * An exact solver for positions with few free edges.
+ *
+ * The solver is a negamax search with alpha-beta pruning, made on a Position
+ * with make and unmake. A move which completes a box is followed by another
+ * move of the same player, so its value is added to the value of the position
+ * after it instead of being negated.
+ *
+ * The value of a position depends only on its taken edges, not on the score
+ * or the way it was reached, so positions are stored in a transposition table
+ * keyed by their Zobrist hash. On a square board, the key is the smallest
+ * hash of the eight rotations and reflections of the position, so symmetrical
+ * positions share an entry. The table is kept between searches.
+ *
+ * Moves are searched captures first, then safe edges, then the edges which
+ * give away boxes.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class EndgameSolver {
+
+	/**
+	 * The table holds 2^TABLE_BITS entries.
+	 */
+	private static final int TABLE_BITS = 18;
+
+	/**
+	 * Marks an empty entry of the table.
+	 */
+	private static final byte EMPTY = 0;
+
+	/**
+	 * Marks an entry whose value is exact.
+	 */
+	private static final byte EXACT = 1;
+
+	/**
+	 * Marks an entry whose value is a lower bound.
+	 */
+	private static final byte LOWER = 2;
+
+	/**
+	 * Marks an entry whose value is an upper bound.
+	 */
+	private static final byte UPPER = 3;
+
+	/**
+	 * The game of the positions solved.
+	 */
+	private DotsAndBoxes game;
+
+	/**
+	 * The keys of each symmetry for each edge. Position s of the hash of a
+	 * position is the hash of its transformation by symmetry s.
+	 */
+	private long[][] symmetryKeys;
+
+	/**
+	 * The hash of the position searched under each symmetry.
+	 */
+	private long[] hashes;
+
+	/**
+	 * The key of each entry of the table.
+	 */
+	private long[] tableKeys;
+
+	/**
+	 * The value of each entry of the table.
+	 */
+	private int[] tableValues;
+
+	/**
+	 * The type of each entry of the table (EMPTY, EXACT, LOWER, or UPPER).
+	 */
+	private byte[] tableFlags;
+
+	/**
+	 * The ordered moves of each ply of the search.
+	 */
+	private int[][] moveBuffers;
+
+	/**
+	 * The best action found by the last call to solve.
+	 */
+	public int bestAction;
+
+	/**
+	 * The number of positions searched by this solver.
+	 */
+	public long searched;
+
+	/**
+	 * Constructor for the EndgameSolver.
+	 *
+	 * @param game
+	 *            The game of the positions to be solved.
+	 */
+	public EndgameSolver(DotsAndBoxes game) {
+		this.game = game;
+
+		int edges = game.edges;
+
+		/* rotations and reflections are only defined on square boards */
+		if (game.width == game.height) {
+			int[] rotation = DotsAndBoxes.getRotationMap(game.width);
+			int[] reflection = DotsAndBoxes.getReflectionMap(game.width);
+
+			symmetryKeys = new long[8][edges];
+
+			for (int s = 0; s < 8; s++) {
+				for (int e = 0; e < edges; e++) {
+					int edge = e;
+
+					for (int i = 0; i < s % 4; i++) {
+						edge = rotation[edge];
+					}
+
+					if (s >= 4) {
+						edge = reflection[edge];
+					}
+
+					symmetryKeys[s][e] = game.zobristKeys[edge];
+				}
+			}
+		} else {
+			symmetryKeys = new long[][] { game.zobristKeys };
+		}
+
+		hashes = new long[symmetryKeys.length];
+
+		tableKeys = new long[1 << TABLE_BITS];
+		tableValues = new int[1 << TABLE_BITS];
+		tableFlags = new byte[1 << TABLE_BITS];
+
+		moveBuffers = new int[edges + 1][edges];
+	}
+
+	/**
+	 * Finds the exact value of a position. The position is returned unchanged.
+	 *
+	 * @param position
+	 *            The position to solve.
+	 * @return The net number of the remaining boxes taken by the player to
+	 *         move, given perfect play by both players. The best action is
+	 *         stored in bestAction.
+	 */
+	public int solve(Position position) {
+		for (int s = 0; s < hashes.length; s++) {
+			hashes[s] = 0;
+		}
+
+		for (int e = 0; e < game.edges; e++) {
+			if (position.isTaken(e)) {
+				for (int s = 0; s < hashes.length; s++) {
+					hashes[s] ^= symmetryKeys[s][e];
+				}
+			}
+		}
+
+		int boxes = position.boxCounts.length;
+		bestAction = -1;
+
+		return search(position, -boxes - 1, boxes + 1, 0);
+	}
+
+	/**
+	 * Solves a node by proving each of its links. The node is then solved with
+	 * the value of its best link. Only the actions of the links are tried, since
+	 * a node whose symmetries are removed has no link for an action equivalent
+	 * to another.
+	 *
+	 * @param position
+	 *            The position of the node, which is returned unchanged.
+	 * @param node
+	 *            The node to solve.
+	 */
+	public void solve(Position position, MCNode node) {
+		for (int i = 0; i < node.links.length; i++) {
+			int action = node.links[i].action;
+
+			/* the player who completes a box moves again */
+			int completed = position.make(action);
+			int value = solve(position);
+			position.unmake();
+
+			node.setProven(action, completed > 0 ? completed + value : -value);
+		}
+	}
+
+	/**
+	 * Searches a position with alpha-beta pruning.
+	 *
+	 * @param position
+	 *            The position to search.
+	 * @param alpha
+	 *            The value the player to move is already sure of.
+	 * @param beta
+	 *            The value the opponent is already sure of.
+	 * @param ply
+	 *            The number of moves made since the start of the search.
+	 * @return The value of the position for the player to move, exact if it is
+	 *         between alpha and beta, or otherwise a bound on the side of the
+	 *         window it falls.
+	 */
+	private int search(Position position, int alpha, int beta, int ply) {
+		if (position.freeCount == 0) {
+			return 0;
+		}
+
+		searched++;
+
+		long key = getKey();
+		int index = getIndex(key);
+
+		if (ply > 0 && tableFlags[index] != EMPTY && tableKeys[index] == key) {
+			int value = tableValues[index];
+			byte flag = tableFlags[index];
+
+			if (flag == EXACT) {
+				return value;
+			} else if (flag == LOWER) {
+				alpha = Math.max(alpha, value);
+			} else {
+				beta = Math.min(beta, value);
+			}
+
+			if (alpha >= beta) {
+				return value;
+			}
+		}
+
+		int startAlpha = alpha;
+		int best = Integer.MIN_VALUE;
+		int[] moves = moveBuffers[ply];
+		int count = orderMoves(position, moves);
+
+		for (int i = 0; i < count; i++) {
+			int edge = moves[i];
+			int value;
+
+			int completed = position.make(edge);
+			updateHashes(edge);
+
+			/* the player who completes a box moves again */
+			if (completed > 0) {
+				value = completed + search(position, alpha - completed, beta - completed, ply + 1);
+			} else {
+				value = -search(position, -beta, -alpha, ply + 1);
+			}
+
+			position.unmake();
+			updateHashes(edge);
+
+			if (value > best) {
+				best = value;
+
+				if (ply == 0) {
+					bestAction = edge;
+				}
+			}
+
+			if (best > alpha) {
+				alpha = best;
+			}
+
+			if (alpha >= beta) {
+				break;
+			}
+		}
+
+		tableKeys[index] = key;
+		tableValues[index] = best;
+		tableFlags[index] = best <= startAlpha ? UPPER : best >= beta ? LOWER : EXACT;
+
+		return best;
+	}
+
+	/**
+	 * Fills an array with the free edges of a position, captures first, then
+	 * safe edges, then the edges which give a box its third side.
+	 *
+	 * A capture which gives no other box its third side is never worse than
+	 * any other move, so if there is one, it is the only move searched.
+	 *
+	 * @param position
+	 *            The position.
+	 * @param moves
+	 *            The array to fill.
+	 * @return The number of moves.
+	 */
+	private int orderMoves(Position position, int[] moves) {
+		int count = 0;
+		int last = position.freeCount;
+
+		for (int i = 0; i < position.freeCount; i++) {
+			int edge = position.free[i];
+			long bit = 1L << edge;
+
+			if ((position.captures[edge >>> 6] & bit) != 0) {
+				if ((position.unsafe[edge >>> 6] & bit) == 0) {
+					moves[0] = edge;
+					return 1;
+				}
+
+				moves[count++] = edge;
+			} else if ((position.unsafe[edge >>> 6] & bit) != 0) {
+				moves[--last] = edge;
+			}
+		}
+
+		for (int i = 0; i < position.freeCount; i++) {
+			int edge = position.free[i];
+			long bit = 1L << edge;
+
+			if (((position.captures[edge >>> 6] | position.unsafe[edge >>> 6]) & bit) == 0) {
+				moves[count++] = edge;
+			}
+		}
+
+		return position.freeCount;
+	}
+
+	/**
+	 * Toggles an edge in the hash of each symmetry.
+	 *
+	 * @param edge
+	 *            The edge taken or returned.
+	 */
+	private void updateHashes(int edge) {
+		for (int s = 0; s < hashes.length; s++) {
+			hashes[s] ^= symmetryKeys[s][edge];
+		}
+	}
+
+	/**
+	 * Gets the key of the position searched, which is the same for every
+	 * symmetry of the position.
+	 *
+	 * @return The smallest hash of the symmetries of the position.
+	 */
+	private long getKey() {
+		long key = hashes[0];
+
+		for (int s = 1; s < hashes.length; s++) {
+			if (hashes[s] < key) {
+				key = hashes[s];
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * Gets the entry of the table for a key.
+	 *
+	 * @param key
+	 *            The key.
+	 * @return The index of the entry.
+	 */
+	private int getIndex(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - TABLE_BITS));
+	}
+}
@@ -0,0 +1,459 @@
+package MCTS;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Plays many games at the same time against clients connected to a local
+ * socket. Each connection is a session with its own tree, served by its own
+ * thread (a virtual thread when the JVM has them). The simulations of every
+ * session are made by a fixed pool of threads, in slices of a few simulations.
+ * A session waits for each slice before asking for the next, so the slices of
+ * the active sessions take turns on the pool, and a move takes about as long
+ * with hundreds of games as the number of active games allows.
+ *
+ * Each command and reply is a line of text:
+ *
+ * NEW - starts a new game. Replies OK.
+ *
+ * MOVE edge - plays an edge for the player to move.
+ *
+ * GO [sims] - searches the current position with at most sims simulations
+ * (the server's limit if not given) and plays the chosen edge for the player
+ * to move.
+ *
+ * QUIT - ends the session. Replies BYE.
+ *
+ * A move is answered with MOVE edge score1 score2 next, where next is the
+ * player to move (1 or 2), or 0 if the game is over. An invalid command is
+ * answered with ERROR and a message. When a client connects, the server sends
+ * READY width height, and a new game is started.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class GameServer {
+
+	/**
+	 * The search whose settings every session uses.
+	 */
+	private MonteCarloTreeSearch search;
+
+	/**
+	 * The game of every session.
+	 */
+	private DotsAndBoxes game;
+
+	/**
+	 * The state in which every edge of the board is taken.
+	 */
+	private GameState terminalState;
+
+	/**
+	 * The threads which make the simulations of every session.
+	 */
+	private ExecutorService searchPool;
+
+	/**
+	 * The largest number of simulations given to a move.
+	 */
+	private int simulations;
+
+	/**
+	 * The number of simulations made by a session before the next session's
+	 * simulations are made.
+	 */
+	private int slice;
+
+	/**
+	 * Constructor for the GameServer.
+	 *
+	 * @param search
+	 *            The search whose settings every session uses.
+	 * @param game
+	 *            The game of every session. Symmetries must not be removed,
+	 *            so the edges of the clients are the actions of the trees.
+	 * @param threads
+	 *            The number of threads which make the simulations.
+	 * @param simulations
+	 *            The largest number of simulations given to a move.
+	 * @param slice
+	 *            The number of simulations made by a session before the next
+	 *            session's simulations are made.
+	 */
+	public GameServer(MonteCarloTreeSearch search, DotsAndBoxes game, int threads, int simulations, int slice) {
+		this.search = search;
+		this.game = game;
+		this.terminalState = search.getTerminalState();
+		this.searchPool = MonteCarloTreeSearch.createPool(threads, "game-search");
+		this.simulations = simulations;
+		this.slice = Math.max(1, slice);
+	}
+
+	/**
+	 * @param args
+	 *            width, height, c
+	 *
+	 *            Optional: port (7070 if not given), scored, threads (the
+	 *            threads making simulations, one per processor if not given),
+	 *            sims (the largest number of simulations per move), slice (the
+	 *            simulations made by a session at a time), and any setting of
+	 *            the search but treeThreads
+	 */
+	public static void main(String[] args) throws IOException {
+		MonteCarloTreeSearch search = new MonteCarloTreeSearch();
+		int width = 0, height = 0, port = 7070, threads = Runtime.getRuntime().availableProcessors(), sims = 1000,
+				slice = 100;
+		boolean scored = false;
+		double c = 0;
+
+		boolean[] params = new boolean[43];
+
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			int index = arg.indexOf("=") + 1;
+			String value = arg.substring(index);
+
+			switch (arg.substring(0, index - 1)) {
+			case "width":
+				width = Integer.parseInt(value);
+				params[0] = true;
+				break;
+			case "height":
+				height = Integer.parseInt(value);
+				params[1] = true;
+				break;
+			case "c":
+				c = Double.parseDouble(value);
+				params[2] = true;
+				break;
+			case "port":
+				port = Integer.parseInt(value);
+				break;
+			case "scored":
+				scored = Boolean.parseBoolean(value);
+				break;
+			case "threads":
+				threads = Integer.parseInt(value);
+				break;
+			case "sims":
+				sims = Integer.parseInt(value);
+				break;
+			case "slice":
+				slice = Integer.parseInt(value);
+				break;
+			default:
+				try {
+					if (!search.setSearchParameter(arg.substring(0, index - 1), value, params)) {
+						System.out.println("Invalid Parameter: " + arg);
+						return;
+					}
+				} catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage());
+					return;
+				}
+				break;
+			}
+		}
+
+		if (!params[0] || !params[1] || !params[2]) {
+			System.out.println("Missing Parameter: " + (!params[0] ? "width" : !params[1] ? "height" : "c"));
+			return;
+		}
+
+		/* the slices of a session are already made on the search threads */
+		if (search.treeThreads > 1) {
+			System.out.println("Invalid Parameter: treeThreads");
+			return;
+		}
+
+		search.setBoard(width, height);
+		search.c = c;
+		search.game = new DotsAndBoxes(height, width, scored, false);
+
+		new GameServer(search, search.game, threads, sims, slice).serve(port);
+	}
+
+	/**
+	 * Accepts clients on a port of the local host until the program ends. Each
+	 * client is served by its own thread.
+	 *
+	 * @param port
+	 *            The port.
+	 * @throws IOException
+	 *             If the port cannot be used.
+	 */
+	public void serve(int port) throws IOException {
+		ServerSocket server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+		ExecutorService sessions = createSessionPool();
+
+		System.out.println("Serving " + search.height + "x" + search.width + " games on port " + port);
+
+		try {
+			while (true) {
+				Socket socket = server.accept();
+				socket.setTcpNoDelay(true);
+				sessions.execute(new GameSession(this, socket));
+			}
+		} finally {
+			server.close();
+			sessions.shutdown();
+			searchPool.shutdown();
+		}
+	}
+
+	/**
+	 * Makes the simulations of one move of a session on the search threads,
+	 * one slice at a time, stopping once the result of the node is proven.
+	 *
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The number of simulations.
+	 * @param tree
+	 *            The tree of the session.
+	 * @return The number of simulations made.
+	 * @throws InterruptedException
+	 *             If the session is interrupted while waiting.
+	 */
+	int think(final MCNode node, final int score, int simulations, final MCTree tree) throws InterruptedException {
+		int made = 0;
+
+		while (made < simulations && node.getProof(score) == MCNode.PROVEN_NONE) {
+			final int run = Math.min(slice, simulations - made);
+
+			Future<Integer> result = searchPool.submit(new Callable<Integer>() {
+				public Integer call() {
+					return search.search(node, score, run, terminalState, tree, game);
+				}
+			});
+
+			try {
+				made += result.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		return made;
+	}
+
+	/**
+	 * Creates the executor which runs the sessions. Each session has a virtual
+	 * thread when the JVM has them (Java 21), and a platform thread otherwise.
+	 * The virtual threads are found by reflection so the server still runs on
+	 * older JVMs.
+	 *
+	 * @return The executor.
+	 */
+	static ExecutorService createSessionPool() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "game-session");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * The game of one client of a GameServer.
+	 *
+	 * @author Jared Prince
+	 * @version 1.0
+	 * @since 1.0
+	 */
+	private static class GameSession implements Runnable {
+
+		/**
+		 * The server of the session.
+		 */
+		private GameServer server;
+
+		/**
+		 * The connection to the client.
+		 */
+		private Socket socket;
+
+		/**
+		 * The tree of the current game.
+		 */
+		private MCTree tree;
+
+		/**
+		 * The node of the current position.
+		 */
+		private MCNode node;
+
+		/**
+		 * The scores of player one and player two.
+		 */
+		private int p1Score, p2Score;
+
+		/**
+		 * True if player one is to move.
+		 */
+		private boolean playerOneTurn;
+
+		/**
+		 * Constructor for the GameSession.
+		 *
+		 * @param server
+		 *            The server of the session.
+		 * @param socket
+		 *            The connection to the client.
+		 */
+		GameSession(GameServer server, Socket socket) {
+			this.server = server;
+			this.socket = socket;
+		}
+
+		/**
+		 * Answers the commands of the client until it quits or disconnects.
+		 */
+		public void run() {
+			try {
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+				PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+
+				newGame();
+				out.println("READY " + server.search.width + " " + server.search.height);
+
+				for (String line = in.readLine(); line != null; line = in.readLine()) {
+					String[] command = line.trim().split("\\s+");
+
+					if (command[0].equalsIgnoreCase("QUIT")) {
+						out.println("BYE");
+						break;
+					}
+
+					out.println(answer(command));
+				}
+			} catch (IOException e) {
+				/* the client has disconnected */
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				try {
+					socket.close();
+				} catch (IOException e) {
+					/* the connection is already closed */
+				}
+			}
+		}
+
+		/**
+		 * Carries out a command of the client.
+		 *
+		 * @param command
+		 *            The words of the command.
+		 * @return The reply.
+		 * @throws InterruptedException
+		 *             If the session is interrupted while searching.
+		 */
+		private String answer(String[] command) throws InterruptedException {
+			try {
+				switch (command[0].toUpperCase()) {
+				case "NEW":
+					newGame();
+					return "OK";
+
+				case "MOVE":
+					if (command.length < 2) {
+						return "ERROR Missing edge";
+					}
+
+					return play(Integer.parseInt(command[1]));
+
+				case "GO":
+					if (isOver()) {
+						return "ERROR The game is over";
+					}
+
+					int sims = command.length < 2 ? server.simulations
+							: Math.min(server.simulations, Integer.parseInt(command[1]));
+					int score = playerOneTurn ? p1Score - p2Score : p2Score - p1Score;
+
+					server.think(node, score, sims, tree);
+
+					return play(node.getNextAction(0, score));
+
+				default:
+					return "ERROR Unknown command: " + command[0];
+				}
+			} catch (NumberFormatException e) {
+				return "ERROR Invalid number: " + e.getMessage();
+			}
+		}
+
+		/**
+		 * Starts a new game with a new tree.
+		 */
+		private void newGame() {
+			tree = server.search.newTree(server.game);
+			node = tree.root;
+			p1Score = 0;
+			p2Score = 0;
+			playerOneTurn = true;
+		}
+
+		/**
+		 * Checks if every edge of the board is taken.
+		 *
+		 * @return True if the game is over.
+		 */
+		private boolean isOver() {
+			return node.state.equals(server.terminalState);
+		}
+
+		/**
+		 * Plays an edge for the player to move.
+		 *
+		 * @param edge
+		 *            The edge.
+		 * @return The reply to the client.
+		 */
+		private String play(int edge) {
+			if (isOver()) {
+				return "ERROR The game is over";
+			}
+
+			if (node.getLink(edge) == null) {
+				return "ERROR Invalid edge: " + edge;
+			}
+
+			int taken = server.game.completedBoxesForEdge(edge, node.state);
+			node = node.getNode(edge, MonteCarloTreeSearch.BEHAVIOR_EXPANSION_ALWAYS);
+
+			if (playerOneTurn) {
+				p1Score += taken;
+			} else {
+				p2Score += taken;
+			}
+
+			playerOneTurn = taken > 0 ? playerOneTurn : !playerOneTurn;
+
+			return "MOVE " + edge + " " + p1Score + " " + p2Score + " " + (isOver() ? 0 : playerOneTurn ? 1 : 2);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package MCTS;
+
+/**
+ * The KL-UCB selection policy for Bernoulli rewards. Rewards are mapped from [-1, 1] to [0, 1] (a draw is
+ * half a win), and the value of an action is the largest mean q for which N(s,a) * KL(p, q) is at most
+ * c * ln N(s), where p is the average reward of the action.
+ * 
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class KLUCBPolicy implements SelectionPolicy {
+
+	/**
+	 * The number of bisection steps used to find the upper bound.
+	 */
+	private static final int ITERATIONS = 16;
+
+	/**
+	 * Gets the KL-UCB index of the action, mapped back to [-1, 1].
+	 * 
+	 * @see MCTS.SelectionPolicy#getValue(double, MCTS.MCNode.ActionLink, int, double)
+	 */
+	public double getValue(double mean, MCNode.ActionLink link, int timesReached, double c) {
+		double p = (mean + 1) / 2;
+		double limit = c * Math.log(timesReached) / link.getSelectionCount();
+
+		double low = p;
+		double high = 1;
+
+		/* find the largest q with KL(p, q) <= limit */
+		for (int i = 0; i < ITERATIONS; i++) {
+			double q = (low + high) / 2;
+
+			if (divergence(p, q) > limit) {
+				high = q;
+			} else {
+				low = q;
+			}
+		}
+
+		return (2 * low) - 1;
+	}
+
+	/**
+	 * Gets the Kullback-Leibler divergence between two Bernoulli distributions.
+	 * 
+	 * @param p
+	 *            The mean of the first distribution.
+	 * @param q
+	 *            The mean of the second distribution.
+	 * @return KL(p, q).
+	 */
+	public static double divergence(double p, double q) {
+		double e = 1e-15;
+		p = Math.min(Math.max(p, e), 1 - e);
+		q = Math.min(Math.max(q, e), 1 - e);
+
+		return p * Math.log(p / q) + (1 - p) * Math.log((1 - p) / (1 - q));
+	}
+}
@@ -0,0 +1,105 @@
+package MCTS;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+/**
+ * One of the playouts made from a leaf when a simulation runs several playouts
+ * from the same leaf (leaf parallelization). Each leaf playout has its own
+ * position, random number generator, and move buffers, so leaf playouts can be
+ * made at the same time on different threads.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class LeafPlayout implements Callable<Integer> {
+
+	/**
+	 * The search whose playout behavior is used.
+	 */
+	MonteCarloTreeSearch search;
+
+	/**
+	 * The position on which the playout is made.
+	 */
+	Position position;
+
+	/**
+	 * The random number generator used by the playout policy.
+	 */
+	Random random;
+
+	/**
+	 * The actions of the game, including the selection moves copied before
+	 * the playout.
+	 */
+	int[] actions;
+
+	/**
+	 * The turns of the game (true for player one), including the selection
+	 * moves copied before the playout.
+	 */
+	boolean[] turns;
+
+	/**
+	 * The index in actions and turns of the first playout move.
+	 */
+	int moves;
+
+	/**
+	 * The result of the last playout for player one (-1 for a loss, 0 for a
+	 * tie, and 1 for a win).
+	 */
+	int result;
+
+	/**
+	 * Constructor for the LeafPlayout.
+	 *
+	 * @param search
+	 *            The search whose playout behavior is used.
+	 * @param game
+	 *            The game to be played.
+	 * @param seed
+	 *            The seed of the random number generator.
+	 */
+	public LeafPlayout(MonteCarloTreeSearch search, DotsAndBoxes game, long seed) {
+		this.search = search;
+		position = new Position(game);
+		random = new Random(seed);
+		actions = new int[game.edges + 1];
+		turns = new boolean[game.edges];
+	}
+
+	/**
+	 * Sets the starting point of the next playout.
+	 *
+	 * @param position
+	 *            The position of the leaf, which is copied.
+	 * @param actions
+	 *            The actions of the selection moves.
+	 * @param turns
+	 *            The turns of the selection moves.
+	 * @param moves
+	 *            The number of selection moves.
+	 */
+	public void reset(Position position, int[] actions, boolean[] turns, int moves) {
+		this.position.copy(position);
+		this.moves = moves;
+
+		System.arraycopy(actions, 0, this.actions, 0, moves);
+		System.arraycopy(turns, 0, this.turns, 0, moves);
+	}
+
+	/**
+	 * Makes the playout.
+	 *
+	 * @return The result for player one.
+	 */
+	public Integer call() {
+		result = search.simulateDefault(position, random, actions, turns, moves);
+
+		return result;
+	}
+}
@@ -17,6 +17,19 @@ public abstract class MCGame {
 	 */
 	public abstract int[] getActions(GameState state);
 	
+	/**
+	 * Finds all possible actions from a given state, ordered from most to least promising by a cheap static
+	 * evaluation. Used when only some of the actions of a node are open to selection.
+	 * <p>
+	 * By default, the actions are returned in the order given by getActions.
+	 * 
+	 * @param  state The state before the move is selected.
+	 * @return Integer array representing all possible moves from the given state.
+	 */
+	public int[] getOrderedActions(GameState state){
+		return getActions(state);
+	}
+	
 	/**
 	 * Gets the successor of a given state.
 	 * <p>
@@ -1,6 +1,7 @@
 package MCTS;
 
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * A single node of a Monte Carlo tree.
@@ -13,9 +14,61 @@ import java.util.Random;
 public class MCNode {
 
 	/**
-	 * Random number generator used to get a random action during ties.
+	 * The proof of a node or link whose result is not known.
 	 */
-	public static Random r = new Random();
+	public static final int PROVEN_NONE = 0;
+
+	/**
+	 * The proof of a node or link which wins for the player to move.
+	 */
+	public static final int PROVEN_WIN = 1;
+
+	/**
+	 * The proof of a node or link which loses for the player to move.
+	 */
+	public static final int PROVEN_LOSS = 2;
+
+	/**
+	 * The proof of a node or link which ties.
+	 */
+	public static final int PROVEN_DRAW = 3;
+
+	/**
+	 * A bound larger than any net number of boxes, given to nodes and links
+	 * whose value is not bounded yet.
+	 */
+	public static final int UNBOUNDED = Short.MAX_VALUE;
+
+	/**
+	 * Updates timesReached atomically, so several threads can search the same
+	 * tree.
+	 */
+	private static final AtomicIntegerFieldUpdater<MCNode> REACHED = AtomicIntegerFieldUpdater
+			.newUpdater(MCNode.class, "timesReached");
+
+	/**
+	 * Updates the packed statistics of a link atomically.
+	 */
+	private static final AtomicLongFieldUpdater<ActionLink> STATS = AtomicLongFieldUpdater
+			.newUpdater(ActionLink.class, "stats");
+
+	/**
+	 * Updates the squared rewards of a link atomically.
+	 */
+	private static final AtomicLongFieldUpdater<ActionLink> SQUARED = AtomicLongFieldUpdater
+			.newUpdater(ActionLink.class, "squaredRewards");
+
+	/**
+	 * Updates the packed virtual losses of a link atomically.
+	 */
+	private static final AtomicLongFieldUpdater<ActionLink> VIRTUAL = AtomicLongFieldUpdater
+			.newUpdater(ActionLink.class, "virtualStats");
+
+	/**
+	 * Updates the packed all-moves-as-first statistics of a link atomically.
+	 */
+	private static final AtomicLongFieldUpdater<ActionLink> AMAF = AtomicLongFieldUpdater
+			.newUpdater(ActionLink.class, "amafStats");
 
 	/**
 	 * The state represented by this node.
@@ -25,7 +78,7 @@ public class MCNode {
 	/**
 	 * The number of times this node has been reached - N(s)
 	 */
-	public int timesReached;
+	public volatile int timesReached;
 
 	/**
 	 * The depth of this node in a full tree. Usually equivalent to the number
@@ -58,6 +111,36 @@ public class MCNode {
 	 */
 	public MCTree tree;
 
+	/**
+	 * The lower bound on the net number of the remaining boxes taken by the
+	 * player to move at this node, given perfect play.
+	 */
+	public int lowerBound = -UNBOUNDED;
+
+	/**
+	 * The upper bound on the net number of the remaining boxes taken by the
+	 * player to move at this node, given perfect play.
+	 */
+	public int upperBound = UNBOUNDED;
+
+	/**
+	 * True if the value of this node has been found exactly, either by the
+	 * endgame solver or because the bounds of its links meet. A solved node
+	 * costs no more simulations.
+	 */
+	public volatile boolean solved;
+
+	/**
+	 * The net number of the remaining boxes taken by the player to move at
+	 * this node, given perfect play. Only set if solved is true.
+	 */
+	public int solvedValue;
+
+	/**
+	 * The best action from this node. Only set if solved is true.
+	 */
+	public int solvedAction;
+
 	/**
 	 * Constructor for the MCNode.
 	 * 
@@ -83,6 +166,12 @@ public class MCNode {
 		for (int i = 0; i < links.length; i++) {
 			links[i] = new ActionLink(actions[i], null);
 		}
+
+		/* nothing remains to be taken at the end of the game */
+		if (links.length == 0) {
+			lowerBound = 0;
+			upperBound = 0;
+		}
 	}
 
 	/**
@@ -91,18 +180,24 @@ public class MCNode {
 	 * 
 	 * @param c
 	 *            The uncertainty constant to be applied when calculating the
-	 *            bonuses of each action.
+	 *            bonuses of each action. If c is 0, no bonus is applied.
 	 * @return An integer representing the action selected.
 	 */
 	public int getNextAction(double c) {
 
-		int action = -1;
-		double max = links[0].getValue(false);
+		/* the best action of a solved node is known */
+		if (solved) {
+			return solvedAction;
+		}
+
+		int action = links[0].action;
+		double max = getSelectionValue(links[0], c);
+		int selectable = getWidenedActions();
 
 		/* find the action with the largest average reward W(s,a) */
-		for (int i = 1; i < links.length; i++) {
+		for (int i = 1; i < selectable; i++) {
 
-			double val = links[i].getValue(false);
+			double val = getSelectionValue(links[i], c);
 
 			/*
 			 * Equal actions should be chosen semi-randomly. Apart from the
@@ -110,7 +205,7 @@ public class MCNode {
 			 * never be equal. The probability of more than two equal values is
 			 * vanishingly small, so there are assumed to be only ties of two.
 			 */
-			if (val > max || (val == max && r.nextDouble() < .5)) {
+			if (val > max || (val == max && tree.search.getRandom().nextDouble() < .5)) {
 				max = val;
 				action = links[i].action;
 			}
@@ -119,6 +214,290 @@ public class MCNode {
 		return action;
 	}
 
+	/**
+	 * Gets the next action, using the proven links. A proven win is always
+	 * taken and a proven loss is never taken unless every selectable action
+	 * is one. Otherwise, the action is selected as by getNextAction(double).
+	 * 
+	 * Proofs are kept as bounds on the net number of the remaining boxes,
+	 * which do not depend on how the node was reached, so the net score of
+	 * the player to move is needed to tell a win from a loss.
+	 * 
+	 * @param c
+	 *            The uncertainty constant to be applied when calculating the
+	 *            bonuses of each action. If c is 0, no bonus is applied.
+	 * @param score
+	 *            The net score of the player to move at this node.
+	 * @return An integer representing the action selected.
+	 */
+	public int getNextAction(double c, int score) {
+
+		/* the best action of a solved node is known */
+		if (solved) {
+			return solvedAction;
+		}
+
+		int action = -1;
+		int win = Integer.MIN_VALUE;
+
+		/* take the proven win with the largest lower bound */
+		for (int i = 0; i < links.length; i++) {
+			if (links[i].getProof(score) == PROVEN_WIN && links[i].lowerBound > win) {
+				win = links[i].lowerBound;
+				action = links[i].action;
+			}
+		}
+
+		if (action != -1) {
+			return action;
+		}
+
+		double max = Double.NEGATIVE_INFINITY;
+		int selectable = getWidenedActions();
+
+		for (int i = 0; i < selectable; i++) {
+			if (links[i].getProof(score) == PROVEN_LOSS) {
+				continue;
+			}
+
+			double val = getSelectionValue(links[i], c);
+
+			if (action == -1 || val > max || (val == max && tree.search.getRandom().nextDouble() < .5)) {
+				max = val;
+				action = links[i].action;
+			}
+		}
+
+		if (action != -1) {
+			return action;
+		}
+
+		/* every selectable action loses, so take the one which may lose by the least */
+		int loss = Integer.MIN_VALUE;
+
+		for (int i = 0; i < selectable; i++) {
+			if (links[i].upperBound > loss) {
+				loss = links[i].upperBound;
+				action = links[i].action;
+			}
+		}
+
+		return action;
+	}
+
+	/**
+	 * Gets the proof of this node.
+	 * 
+	 * @param score
+	 *            The net score of the player to move at this node.
+	 * @return PROVEN_WIN, PROVEN_LOSS, PROVEN_DRAW, or PROVEN_NONE.
+	 */
+	public int getProof(int score) {
+		return getProof(score, lowerBound, upperBound);
+	}
+
+	/**
+	 * Gets the proof of a node or link from bounds on its value.
+	 * 
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param lower
+	 *            The lower bound on the net number of the remaining boxes
+	 *            taken by the player to move.
+	 * @param upper
+	 *            The upper bound on the net number of the remaining boxes
+	 *            taken by the player to move.
+	 * @return PROVEN_WIN, PROVEN_LOSS, PROVEN_DRAW, or PROVEN_NONE.
+	 */
+	private static int getProof(int score, int lower, int upper) {
+		if (score + lower > 0) {
+			return PROVEN_WIN;
+		}
+
+		if (score + upper < 0) {
+			return PROVEN_LOSS;
+		}
+
+		if (score + lower == 0 && score + upper == 0) {
+			return PROVEN_DRAW;
+		}
+
+		return PROVEN_NONE;
+	}
+
+	/**
+	 * Gets the link of an action.
+	 * 
+	 * @param action
+	 *            An integer representing the action.
+	 * @return The link, or null if the action is not possible from this node.
+	 */
+	public ActionLink getLink(int action) {
+		for (int i = 0; i < links.length; i++) {
+			if (links[i].action == action) {
+				return links[i];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Marks the link of an action as proven with an exact value.
+	 * 
+	 * @param action
+	 *            An integer representing the action.
+	 * @param value
+	 *            The net number of the remaining boxes taken by the player to
+	 *            move after making the action, given perfect play.
+	 * @see #setBounds(int, int, int)
+	 */
+	public void setProven(int action, int value) {
+		setBounds(action, value, value);
+	}
+
+	/**
+	 * Narrows the bounds on the value of the link of an action, then the
+	 * bounds of this node, which are the largest bounds of its links (the
+	 * MCTS-Solver rules, with scores instead of wins and losses). When the
+	 * bounds of this node meet, it is solved.
+	 * 
+	 * Bounds only narrow, so a thread which reads the bounds while another
+	 * thread sets them reads bounds which are still correct.
+	 * 
+	 * @param action
+	 *            An integer representing the action.
+	 * @param lower
+	 *            A lower bound on the net number of the remaining boxes taken
+	 *            by the player to move after making the action.
+	 * @param upper
+	 *            An upper bound on the net number of the remaining boxes taken
+	 *            by the player to move after making the action.
+	 * @return True if the bounds of this node changed, false otherwise.
+	 */
+	public synchronized boolean setBounds(int action, int lower, int upper) {
+		ActionLink link = getLink(action);
+
+		if (lower <= link.lowerBound && upper >= link.upperBound) {
+			return false;
+		}
+
+		link.lowerBound = Math.max(link.lowerBound, lower);
+		link.upperBound = Math.min(link.upperBound, upper);
+
+		ActionLink best = links[0];
+		int max = links[0].upperBound;
+
+		for (int i = 1; i < links.length; i++) {
+			if (links[i].lowerBound > best.lowerBound) {
+				best = links[i];
+			}
+
+			max = Math.max(max, links[i].upperBound);
+		}
+
+		if (best.lowerBound == lowerBound && max == upperBound) {
+			return false;
+		}
+
+		lowerBound = best.lowerBound;
+		upperBound = max;
+
+		if (lowerBound == upperBound) {
+			setSolved(lowerBound, best.action);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Marks this node as solved.
+	 * 
+	 * @param value
+	 *            The net number of the remaining boxes taken by the player to
+	 *            move, given perfect play.
+	 * @param action
+	 *            The best action.
+	 */
+	public synchronized void setSolved(int value, int action) {
+		lowerBound = value;
+		upperBound = value;
+		solvedValue = value;
+		solvedAction = action;
+		solved = true;
+	}
+
+	/**
+	 * Gets the number of links which can be selected from this node. With
+	 * progressive widening, this is the first widenBase * N(s)^widenExponent
+	 * links (which are in the static order of the game). Otherwise, every link
+	 * can be selected.
+	 * 
+	 * @return The number of selectable links.
+	 */
+	public int getWidenedActions() {
+		MonteCarloTreeSearch search = tree.search;
+
+		if (search.behaviors[MonteCarloTreeSearch.BEHAVIOR_INDEX_WIDENING]
+				!= MonteCarloTreeSearch.BEHAVIOR_WIDENING_PROGRESSIVE) {
+			return links.length;
+		}
+
+		double k = Math.ceil(search.widenBase * Math.pow(timesReached, search.widenExponent));
+
+		return k >= links.length ? links.length : Math.max(1, (int) k);
+	}
+
+	/**
+	 * Gets the value of a link used when selecting the next action. Explored
+	 * links are valued by the selection policy of the search. Unexplored links
+	 * are valued according to the unexplored behavior of the search.
+	 * 
+	 * @param link
+	 *            The link to be valued.
+	 * @param c
+	 *            The uncertainty constant. If c is 0, only the average reward
+	 *            is used and unexplored links are never preferred.
+	 * @return The value of the link.
+	 */
+	private double getSelectionValue(ActionLink link, double c) {
+		MonteCarloTreeSearch search = tree.search;
+		boolean rave = search.behaviors[MonteCarloTreeSearch.BEHAVIOR_INDEX_VALUE]
+				== MonteCarloTreeSearch.BEHAVIOR_VALUE_RAVE;
+
+		int timesChosen = link.getSelectionCount();
+
+		if (timesChosen == 0) {
+			if (c == 0) {
+				return Double.NEGATIVE_INFINITY;
+			}
+
+			if (search.behaviors[MonteCarloTreeSearch.BEHAVIOR_INDEX_UNEXPLORED]
+					== MonteCarloTreeSearch.BEHAVIOR_UNEXPLORED_FIRST_PLAY_URGENCY) {
+
+				/* the AMAF value is a better guess than a constant, when there is one */
+				return rave && link.getAmafChosen() > 0 ? link.getAmafValue() : search.firstPlayUrgency;
+			}
+
+			return Double.POSITIVE_INFINITY;
+		}
+
+		double mean = link.getSelectionValue();
+
+		if (rave) {
+			double k = search.raveEquivalence;
+			double beta = Math.sqrt(k / (3 * timesChosen + k));
+
+			mean = (1 - beta) * mean + beta * link.getAmafValue();
+		}
+
+		if (c == 0) {
+			return mean;
+		}
+
+		return search.policy.getValue(mean, link, timesReached, c);
+	}
+
 	/**
 	 * Gets the successor of this node based on the given action.
 	 * 
@@ -136,30 +515,66 @@ public class MCNode {
 
 			/* Get the corresponding child */
 			if (links[i].action == action) {
+				expand(links[i], behavior);
 
-				if (links[i].child != null) {
-					return links[i].child;
-				}
+				return links[i].child;
+			}
+		}
+
+		return null;
+	}
 
-				/* Create a new node */
-				else if (behavior == MonteCarloTreeSearch.BEHAVIOR_EXPANSION_ALWAYS
-						|| (links[i].timesChosen == MCTree.NODE_CREATION_COUNT
-								&& behavior == MonteCarloTreeSearch.BEHAVIOR_EXPANSION_STANDARD)) {
+	/**
+	 * Creates the successor of this node for the given action, if it does not
+	 * exist and the behavior allows it.
+	 * 
+	 * @param action
+	 *            An integer representing the action to be made.
+	 * @param behavior
+	 *            Defines under which conditions a node is created.
+	 * @return True if this call added a new node to the tree, false if the
+	 *         successor already existed, was not created, or was found in the
+	 *         tree (by another path).
+	 */
+	public boolean expand(int action, int behavior) {
+		ActionLink link = getLink(action);
 
-					MCNode newNode = getNextNode(action);
-					links[i].child = tree.addNode(newNode);
+		return link != null && expand(link, behavior);
+	}
 
-					if (!isLeaf) {
-						isLeaf = true;
-						tree.leaves--;
-					}
+	/**
+	 * Creates the successor of a link of this node, if it does not exist and
+	 * the behavior allows it.
+	 * 
+	 * @param link
+	 *            The link.
+	 * @param behavior
+	 *            Defines under which conditions a node is created.
+	 * @return True if this call added a new node to the tree.
+	 */
+	private boolean expand(ActionLink link, int behavior) {
+		if (link.child != null) {
+			return false;
+		}
 
-					return links[i].child;
+		/* Create a new node */
+		if (behavior == MonteCarloTreeSearch.BEHAVIOR_EXPANSION_ALWAYS
+				|| (link.getTimesChosen() >= tree.getNodeCreationCount()
+						&& behavior == MonteCarloTreeSearch.BEHAVIOR_EXPANSION_STANDARD)) {
+
+			/* only one thread creates the child of a link */
+			synchronized (link) {
+				if (link.child == null) {
+					MCNode newNode = getNextNode(link.action);
+					link.child = tree.addNode(newNode);
+					tree.removeLeaf(this);
+
+					return link.child == newNode;
 				}
 			}
 		}
 
-		return null;
+		return false;
 	}
 
 	/**
@@ -216,31 +631,82 @@ public class MCNode {
 	 *            An integer representing the action selected.
 	 * @param value
 	 *            The reward to be added.
-	 * @param c
-	 *            The uncertainty constant to be applied to the updated bonus.
 	 */
-	public void addValue(int action, int value, double c) {
-		timesReached++;
+	public void addValue(int action, int value) {
+		addValue(action, value, value * value, 1);
+	}
+
+	/**
+	 * Adds the combined rewards of several simulations to the total rewards for
+	 * an action.
+	 * 
+	 * @param action
+	 *            An integer representing the action selected.
+	 * @param rewardSum
+	 *            The sum of the rewards to be added.
+	 * @param squaredSum
+	 *            The sum of the squares of the rewards to be added.
+	 * @param count
+	 *            The number of rewards.
+	 */
+	public void addValue(int action, int rewardSum, int squaredSum, int count) {
+		addValue(action, rewardSum, squaredSum, count, 0);
+	}
+
+	/**
+	 * Adds the combined rewards of several simulations to the total rewards for
+	 * an action, taking back the virtual loss given to the action when it was
+	 * selected.
+	 * 
+	 * @param action
+	 *            An integer representing the action selected.
+	 * @param rewardSum
+	 *            The sum of the rewards to be added.
+	 * @param squaredSum
+	 *            The sum of the squares of the rewards to be added.
+	 * @param count
+	 *            The number of rewards.
+	 * @param virtualLoss
+	 *            The virtual loss given to the action, or 0.
+	 * @see ActionLink#addVirtualLoss(int)
+	 */
+	public void addValue(int action, int rewardSum, int squaredSum, int count, int virtualLoss) {
+		REACHED.getAndAdd(this, count);
 
 		/* find the index of the action */
-		int index = -1;
 		for (int i = 0; i < links.length; i++) {
 			if (links[i].action == action) {
-				index = i;
+				links[i].update(rewardSum, squaredSum, count, virtualLoss);
 				break;
 			}
 		}
+	}
 
-		links[index].update(value);
-
-		/* update the bonuses and reorder the list */
+	/**
+	 * Adds the given reward to the all-moves-as-first values of every action
+	 * played later in the game by the player to move at this node.
+	 * 
+	 * @param playedAt
+	 *            The first move at which each action was played, or -1 if it
+	 *            was not played.
+	 * @param player
+	 *            An array with turns played by player one represented as true
+	 *            and turns played by player two represented as false.
+	 * @param move
+	 *            The move at which this node was played.
+	 * @param value
+	 *            The reward to be added, for the player to move at this node.
+	 */
+	public void addAmafValues(int[] playedAt, boolean[] player, int move, int value) {
 		for (int i = 0; i < links.length; i++) {
-			links[i].updateBonus(timesReached, c);
+			int played = playedAt[links[i].action];
 
-			/* sortLink(links, i); */
+			if (played >= move && player[played] == player[move]) {
+				links[i].updateAmaf(value);
+			}
 		}
 	}
-	
+
 	/**
 	 * Sorts an updated value into an already sorted array starting with its current index.
 	 * 
@@ -252,7 +718,7 @@ public class MCNode {
 		/* move link up the queue while it's value is greater than the link
 		 * before it
 		 */
-		while (i > 0 && links[i].getValue(true) > links[i - 1].getValue(true)) {
+		while (i > 0 && links[i].getValue() > links[i - 1].getValue()) {
 			ActionLink tempLink = links[i];
 			links[i] = links[i - 1];
 			links[i - 1] = tempLink;
@@ -264,7 +730,7 @@ public class MCNode {
 		 * move link down the queue while it's value is less than the link
 		 * after it
 		 */
-		while (i < links.length - 1 && links[i].getValue(true) < links[i + 1].getValue(true)) {
+		while (i < links.length - 1 && links[i].getValue() < links[i + 1].getValue()) {
 			ActionLink tempLink = links[i];
 			links[i] = links[i + 1];
 			links[i + 1] = tempLink;
@@ -282,7 +748,7 @@ public class MCNode {
 	 */
 	private MCNode getNextNode(int action) {
 		GameState newState = tree.game.getSuccessorState(state, action);
-		return new MCNode(newState, depth + 1, tree.game.getActions(newState), tree);
+		return new MCNode(newState, depth + 1, tree.getActions(newState), tree);
 	}
 
 	/**
@@ -321,6 +787,13 @@ public class MCNode {
 		timesReached += node.timesReached;
 		isLeaf = (isLeaf && node.isLeaf);
 
+		if (!solved && node.solved) {
+			setSolved(node.solvedValue, node.solvedAction);
+		}
+
+		lowerBound = Math.max(lowerBound, node.lowerBound);
+		upperBound = Math.min(upperBound, node.upperBound);
+
 		for (int i = 0; i < links.length; i++) {
 			links[i].merge(node.links[i]);
 		}
@@ -339,29 +812,105 @@ public class MCNode {
 		return timesActionChosen;
 	}
 	
-	//returns the array of each reward/child average for each action link
-	public double[] getRewards() {
-		double[] rewards = new double[links.length];
+	//returns the array of the reward sum for each action link
+	public int[] getRewards() {
+		int[] rewards = new int[links.length];
 		for(int i=0; i< rewards.length; i++){
-			rewards[i]= links[i].getRewards();
+			rewards[i]= getRewardSum(links[i].stats);
 		}
 		return rewards;
 	}
 	
-	public void setRewards(double[] rewardsToSet){
-		for(int i=0; i<links.length; i++){
-			links[i].rewards= rewardsToSet[i];
+	//returns the array of the sum of the squared rewards for each action link
+	public long[] getSquaredRewards() {
+		long[] squared = new long[links.length];
+		for(int i=0; i<squared.length; i++){
+			squared[i]= links[i].squaredRewards;
+		}
+		return squared;
+	}
+	
+	//returns the array of the packed all-moves-as-first statistics for each action link
+	public long[] getAmafStats() {
+		long[] amaf = new long[links.length];
+		for(int i=0; i<amaf.length; i++){
+			amaf[i]= links[i].amafStats;
 		}
+		return amaf;
 	}
 	
-	public void setTimesActionChosen(int[] timesActionChosen){
-		for(int i=0; i<links.length; i++){
-			links[i].timesChosen= timesActionChosen[i];
+	/**
+	 * Replaces the statistics of every link. The count and reward sum of a
+	 * link are written together in one store, so no thread reads a count
+	 * paired with the old reward sum.
+	 * 
+	 * @param counts
+	 *            The times each action was chosen.
+	 * @param rewards
+	 *            The reward sum of each action.
+	 */
+	public void setStats(int[] counts, int[] rewards) {
+		for (int i = 0; i < links.length; i++) {
+			links[i].stats = pack(counts[i], rewards[i]);
+		}
+	}
+
+	/**
+	 * Replaces the sums of the squared rewards and the packed
+	 * all-moves-as-first statistics of every link.
+	 * 
+	 * @param squared
+	 *            The sum of the squared rewards of each action.
+	 * @param amaf
+	 *            The packed all-moves-as-first statistics of each action.
+	 * @see #pack(int, int)
+	 */
+	public void setStats(long[] squared, long[] amaf) {
+		for (int i = 0; i < links.length; i++) {
+			links[i].squaredRewards = squared[i];
+			links[i].amafStats = amaf[i];
 		}
 	}
 	
 	/*------------------------------------------------------------------------------------------*/
 
+	/**
+	 * Packs a count and a reward sum into one long, the count in the high 32
+	 * bits and the reward sum in the low 32 bits. Two packed values are added
+	 * by adding the longs, so both halves are updated by a single atomic add.
+	 * 
+	 * @param count
+	 *            The count.
+	 * @param rewardSum
+	 *            The reward sum, which may be negative.
+	 * @return The packed value.
+	 */
+	static long pack(int count, int rewardSum) {
+		return ((long) count << 32) + rewardSum;
+	}
+
+	/**
+	 * Gets the reward sum of a packed value.
+	 * 
+	 * @param packed
+	 *            The packed value.
+	 * @return The reward sum.
+	 */
+	static int getRewardSum(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * Gets the count of a packed value.
+	 * 
+	 * @param packed
+	 *            The packed value.
+	 * @return The count.
+	 */
+	static int getCount(long packed) {
+		return (int) ((packed - (int) packed) >> 32);
+	}
+
 	/**
 	 * Represents a single possible action from the parent node.
 	 * 
@@ -377,24 +926,52 @@ public class MCNode {
 		int action;
 
 		/**
-		 * The number of times this action was chosen.
+		 * The number of times this action was chosen and the total rewards
+		 * resulting from selecting this action, packed into one value so a
+		 * simulation updates both at once, even while other threads search
+		 * the tree.
+		 * 
+		 * @see MCNode#pack(int, int)
+		 */
+		volatile long stats;
+
+		/**
+		 * The total of the squares of the rewards resulting from selecting this
+		 * action. Used to find the variance of the rewards.
 		 */
-		int timesChosen = 0;
+		volatile long squaredRewards;
 
 		/**
-		 * The total rewards resulting from selecting this action.
+		 * The number of times this action was played by the same player later in
+		 * a simulation through the parent (all-moves-as-first), and the total
+		 * rewards of those simulations, packed as in stats.
 		 */
-		double rewards;
+		volatile long amafStats;
 
 		/**
-		 * The bonus applied to the average u(s, a).
+		 * The virtual losses given to this action by the simulations which
+		 * selected it and are not yet backed up, packed as in stats. They are
+		 * only seen by selection, never by expansion or the statistics of the
+		 * action.
 		 */
-		double bonus = 1;
+		volatile long virtualStats;
 
 		/**
 		 * The successor node of the parent after this action is made.
 		 */
-		MCNode child;
+		volatile MCNode child;
+
+		/**
+		 * The lower bound on the net number of the remaining boxes taken by
+		 * the player to move at the parent after this action is made.
+		 */
+		int lowerBound = -UNBOUNDED;
+
+		/**
+		 * The upper bound on the net number of the remaining boxes taken by
+		 * the player to move at the parent after this action is made.
+		 */
+		int upperBound = UNBOUNDED;
 
 		/**
 		 * Constructor for the ActionLink.
@@ -411,11 +988,48 @@ public class MCNode {
 		}
 
 		public double getRewards() {
-			return rewards;
+			return getRewardSum(stats);
 		}
 
 		public int getTimesChosen() {
-			return timesChosen;
+			return getCount(stats);
+		}
+
+		public double getSquaredRewards() {
+			return squaredRewards;
+		}
+
+		public int getAmafChosen() {
+			return getCount(amafStats);
+		}
+
+		/**
+		 * Gets the number of times this action was chosen, counting the
+		 * virtual losses of the simulations not yet backed up. Used by
+		 * selection.
+		 * 
+		 * @return The number of times this action was chosen.
+		 */
+		public int getSelectionCount() {
+			return getCount(stats + virtualStats);
+		}
+
+		/**
+		 * Gets the average reward of the action, counting the virtual losses
+		 * of the simulations not yet backed up. Used by selection.
+		 * 
+		 * @return The average reward of this action, or 0 if it has not been
+		 *         chosen.
+		 */
+		public double getSelectionValue() {
+			long stats = this.stats + virtualStats;
+			int timesChosen = getCount(stats);
+
+			if (timesChosen == 0) {
+				return 0;
+			}
+
+			return (double) getRewardSum(stats) / timesChosen;
 		}
 
 		/**
@@ -425,36 +1039,127 @@ public class MCNode {
 		 *            The reward to be added.
 		 */
 		public void update(int reward) {
-			this.rewards += reward;
-			timesChosen++;
+			update(reward, reward * reward, 1);
 		}
 
 		/**
-		 * Updates the bonus of this action.
+		 * Updates the node with the combined rewards of several simulations.
 		 * 
-		 * @param timesReached
-		 *            The number of times the parent node was reached.
-		 * @param c
-		 *            The uncertainty constant to be applied to the bonus.
+		 * @param rewardSum
+		 *            The sum of the rewards.
+		 * @param squaredSum
+		 *            The sum of the squares of the rewards.
+		 * @param count
+		 *            The number of rewards.
 		 */
-		public void updateBonus(int timesReached, double c) {
-			this.bonus = c * Math.sqrt(Math.log(timesReached) / timesChosen);
+		public void update(int rewardSum, int squaredSum, int count) {
+			update(rewardSum, squaredSum, count, 0);
 		}
 
 		/**
-		 * Gets the value of the action.
+		 * Updates the node with the combined rewards of several simulations,
+		 * then takes back the virtual loss given to the action.
 		 * 
-		 * @param applyBonus
-		 *            True if the uncertainty bonus should be applied, false
-		 *            otherwise.
-		 * @return The total value of this action.
+		 * @param rewardSum
+		 *            The sum of the rewards.
+		 * @param squaredSum
+		 *            The sum of the squares of the rewards.
+		 * @param count
+		 *            The number of rewards.
+		 * @param virtualLoss
+		 *            The virtual loss given to this action, or 0.
 		 */
-		public double getValue(boolean applyBonus) {
+		public void update(int rewardSum, int squaredSum, int count, int virtualLoss) {
+			STATS.getAndAdd(this, pack(count, rewardSum));
+
+			if (squaredSum != 0) {
+				SQUARED.getAndAdd(this, squaredSum);
+			}
+
+			if (virtualLoss != 0) {
+				VIRTUAL.getAndAdd(this, pack(-virtualLoss, virtualLoss));
+			}
+		}
+
+		/**
+		 * Counts the action as chosen and lost a number of times, until the
+		 * simulation which selected it is backed up. Other threads searching
+		 * the tree see the action as worse in the meantime, and are more likely
+		 * to select another.
+		 * 
+		 * @param virtualLoss
+		 *            The number of losses to add.
+		 */
+		public void addVirtualLoss(int virtualLoss) {
+			VIRTUAL.getAndAdd(this, pack(virtualLoss, -virtualLoss));
+		}
+
+		/**
+		 * Updates the all-moves-as-first value of the node with a given reward.
+		 * 
+		 * @param reward
+		 *            The reward to be added.
+		 */
+		public void updateAmaf(int reward) {
+			AMAF.getAndAdd(this, pack(1, reward));
+		}
+
+		/**
+		 * Updates the all-moves-as-first value of the node with the combined
+		 * rewards of several simulations.
+		 * 
+		 * @param rewardSum
+		 *            The sum of the rewards.
+		 * @param count
+		 *            The number of rewards.
+		 */
+		public void updateAmaf(int rewardSum, int count) {
+			AMAF.getAndAdd(this, pack(count, rewardSum));
+		}
+
+		/**
+		 * Gets the average all-moves-as-first reward of the action. If the
+		 * action has no such rewards, the average reward is used.
+		 * 
+		 * @return The all-moves-as-first value of this action.
+		 */
+		public double getAmafValue() {
+			long amaf = amafStats;
+			int amafChosen = getCount(amaf);
+
+			if (amafChosen == 0) {
+				return getValue();
+			}
+
+			return (double) getRewardSum(amaf) / amafChosen;
+		}
+
+		/**
+		 * Gets the average reward of the action Q(s,a).
+		 * 
+		 * @return The average reward of this action, or 0 if it has not been
+		 *         chosen.
+		 */
+		public double getValue() {
+			long stats = this.stats;
+			int timesChosen = getCount(stats);
+
 			if (timesChosen == 0) {
-				return bonus;
+				return 0;
 			}
 
-			return (rewards / timesChosen) + (applyBonus ? bonus : 0);
+			return (double) getRewardSum(stats) / timesChosen;
+		}
+
+		/**
+		 * Gets the proof of this link.
+		 * 
+		 * @param score
+		 *            The net score of the player to move at the parent.
+		 * @return PROVEN_WIN, PROVEN_LOSS, PROVEN_DRAW, or PROVEN_NONE.
+		 */
+		public int getProof(int score) {
+			return MCNode.getProof(score, lowerBound, upperBound);
 		}
 
 		/**
@@ -468,8 +1173,12 @@ public class MCNode {
 				child = link.child;
 			}
 
-			timesChosen += link.timesChosen;
-			rewards += link.rewards;
+			lowerBound = Math.max(lowerBound, link.lowerBound);
+			upperBound = Math.min(upperBound, link.upperBound);
+
+			stats += link.stats;
+			squaredRewards += link.squaredRewards;
+			amafStats += link.amafStats;
 		}
 	}
 }
\ No newline at end of file
@@ -41,9 +41,21 @@ public class MCTree {
 
 	/**
 	 * The number of times an action must be selected from a node before a
-	 * successor is created for that action.
+	 * successor is created for that action (while the tree is small).
 	 */
-	public final static int NODE_CREATION_COUNT = 1;
+	public int nodeCreationCount = 1;
+
+	/**
+	 * The number of nodes the tree must gain before nodeCreationCount is
+	 * effectively raised by one. This makes expansion more selective as the
+	 * tree grows. If 0, the count never changes.
+	 */
+	public int nodeCreationGrowth = 0;
+
+	/**
+	 * The search which uses this tree, whose settings are used by its nodes.
+	 */
+	public MonteCarloTreeSearch search;
 
 	/**
 	 * The MCTSGame to be used by this tree.
@@ -64,19 +76,53 @@ public class MCTree {
 	/**
 	 * Constructor for the MCTree.
 	 * 
+	 * @param search
+	 *            The search which uses this tree.
 	 * @param game
 	 *            MCTSGame to be used by this tree.
 	 * @param state
 	 *            The state of the root node.
 	 */
-	public MCTree(MCGame game, GameState state) {
+	public MCTree(MonteCarloTreeSearch search, MCGame game, GameState state) {
+		this.search = search;
 		this.game = game;
 
 		/* initialize the root */
-		root = new MCNode(state, 0, game.getActions(state), this);
+		root = new MCNode(state, 0, getActions(state), this);
 		nodeTable.put(root.state.getString(), root);
 	}
 
+	/**
+	 * Gets the number of times an action must be selected from a node before a
+	 * successor is created for that action, given the current size of the tree.
+	 * 
+	 * @return The node creation count.
+	 */
+	public int getNodeCreationCount() {
+		if (nodeCreationGrowth <= 0) {
+			return nodeCreationCount;
+		}
+
+		return nodeCreationCount + (numNodes / nodeCreationGrowth);
+	}
+
+	/**
+	 * Gets the actions for a new node of this tree. When the search uses
+	 * progressive widening, the actions are in the static order of the game.
+	 * 
+	 * @param state
+	 *            The state of the new node.
+	 * @return The actions of the node.
+	 */
+	public int[] getActions(GameState state) {
+		if (search.behaviors[MonteCarloTreeSearch.BEHAVIOR_INDEX_WIDENING]
+				== MonteCarloTreeSearch.BEHAVIOR_WIDENING_PROGRESSIVE) {
+			return game.getOrderedActions(state);
+		}
+
+		return game.getActions(state);
+	}
+
 	/**
 	 * Finds a specific node in the tree.
 	 * 
@@ -96,7 +142,7 @@ public class MCTree {
 	 * @return The node added or (if the node already exists in the tree) the
 	 *         equivalent node in the tree.
 	 */
-	public MCNode addNode(MCNode node) {
+	public synchronized MCNode addNode(MCNode node) {
 		MCNode p = nodeTable.get(node.state.getString());
 
 		if (p == null) {
@@ -116,6 +162,20 @@ public class MCTree {
 		return p;
 	}
 
+	/**
+	 * Counts a node as no longer a leaf, once it has a successor. Several
+	 * threads may expand the node at the same time.
+	 * 
+	 * @param node
+	 *            The node.
+	 */
+	public synchronized void removeLeaf(MCNode node) {
+		if (node.isLeaf) {
+			node.isLeaf = false;
+			leaves--;
+		}
+	}
+
 	/**
 	 * Deletes the node on the tree equivalent to the given node.
 	 * 
@@ -0,0 +1,210 @@
+package MCTS;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays the matches of a competition at the same time. Each thread takes the
+ * next match to be played until none are left. A match builds its own trees,
+ * and each thread has its own random number generator, scratch memory, and
+ * move times, so the matches share nothing but the games, which are not
+ * changed during play.
+ *
+ * When the matches are seeded, match i is played with the same seed as in a
+ * sequential run, and its result is stored at position i, so the results are
+ * the same as those of the sequential run.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class MatchScheduler {
+
+	/**
+	 * The search whose matches are played.
+	 */
+	private MonteCarloTreeSearch search;
+
+	/**
+	 * The number of matches played at the same time.
+	 */
+	private int threads;
+
+	/**
+	 * Constructor for the MatchScheduler.
+	 *
+	 * @param search
+	 *            The search whose matches are played.
+	 * @param threads
+	 *            The number of matches played at the same time.
+	 */
+	public MatchScheduler(MonteCarloTreeSearch search, int threads) {
+		this.search = search;
+		this.threads = threads;
+	}
+
+	/**
+	 * Plays a number of games between two MCTS players. The move times of
+	 * every thread are added to the times of the search.
+	 *
+	 * @param game
+	 *            The game for player one.
+	 * @param game2
+	 *            The game for player two.
+	 * @param simulationsPerTurn1
+	 *            The number of simulations given to player one.
+	 * @param simulationsPerTurn2
+	 *            The number of simulations given to player two.
+	 * @param matches
+	 *            The number of games to be played.
+	 * @param parallel
+	 *            True if player one uses a root-parallel search.
+	 * @return Position i is the result of match i, as returned by
+	 *         MonteCarloTreeSearch.match.
+	 */
+	public double[][] play(DotsAndBoxes game, DotsAndBoxes game2, int simulationsPerTurn1, int simulationsPerTurn2,
+			int matches, boolean parallel) {
+		double[][] results = new double[matches][];
+		AtomicInteger next = new AtomicInteger();
+
+		MatchWorker[] workers = new MatchWorker[Math.max(1, Math.min(threads, matches))];
+
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new MatchWorker(search, game, game2, simulationsPerTurn1, simulationsPerTurn2, parallel,
+					next, results);
+		}
+
+		ExecutorService pool = MonteCarloTreeSearch.createPool(workers.length, "match");
+
+		try {
+			MonteCarloTreeSearch.runTasks(pool, workers);
+		} finally {
+			pool.shutdown();
+		}
+
+		long[][] times = search.times;
+
+		for (int i = 0; i < workers.length; i++) {
+			for (int move = 0; move < times.length; move++) {
+				times[move][0] += workers[i].times[move][0];
+				times[move][1] += workers[i].times[move][1];
+				times[move][2] += workers[i].times[move][2];
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * One of the threads of a MatchScheduler.
+	 *
+	 * @author Jared Prince
+	 * @version 1.0
+	 * @since 1.0
+	 */
+	private static class MatchWorker implements Callable<Integer> {
+
+		/**
+		 * The search whose matches are played.
+		 */
+		private MonteCarloTreeSearch search;
+
+		/**
+		 * The game for player one.
+		 */
+		private DotsAndBoxes game;
+
+		/**
+		 * The game for player two.
+		 */
+		private DotsAndBoxes game2;
+
+		/**
+		 * The number of simulations given to player one.
+		 */
+		private int simulationsPerTurn1;
+
+		/**
+		 * The number of simulations given to player two.
+		 */
+		private int simulationsPerTurn2;
+
+		/**
+		 * True if player one uses a root-parallel search.
+		 */
+		private boolean parallel;
+
+		/**
+		 * The next match to be played, shared by every thread.
+		 */
+		private AtomicInteger next;
+
+		/**
+		 * The results of every match, shared by every thread.
+		 */
+		private double[][] results;
+
+		/**
+		 * The times of player one's moves in the matches of this thread.
+		 */
+		long[][] times;
+
+		/**
+		 * Constructor for the MatchWorker.
+		 *
+		 * @param search
+		 *            The search whose matches are played.
+		 * @param game
+		 *            The game for player one.
+		 * @param game2
+		 *            The game for player two.
+		 * @param simulationsPerTurn1
+		 *            The number of simulations given to player one.
+		 * @param simulationsPerTurn2
+		 *            The number of simulations given to player two.
+		 * @param parallel
+		 *            True if player one uses a root-parallel search.
+		 * @param next
+		 *            The next match to be played, shared by every thread.
+		 * @param results
+		 *            The results of every match, shared by every thread.
+		 */
+		MatchWorker(MonteCarloTreeSearch search, DotsAndBoxes game, DotsAndBoxes game2, int simulationsPerTurn1,
+				int simulationsPerTurn2, boolean parallel, AtomicInteger next, double[][] results) {
+			this.search = search;
+			this.game = game;
+			this.game2 = game2;
+			this.simulationsPerTurn1 = simulationsPerTurn1;
+			this.simulationsPerTurn2 = simulationsPerTurn2;
+			this.parallel = parallel;
+			this.next = next;
+			this.results = results;
+			this.times = new long[search.times.length][3];
+		}
+
+		/**
+		 * Plays matches until none are left.
+		 *
+		 * @return The number of matches played by this thread.
+		 */
+		public Integer call() {
+			search.setMoveTimes(times);
+
+			int played = 0;
+
+			for (int i = next.getAndIncrement(); i < results.length; i = next.getAndIncrement()) {
+				if (search.seeded) {
+					search.setSeed(search.seed + i);
+				}
+
+				results[i] = search.match(null, game, null, game2, simulationsPerTurn1,
+						simulationsPerTurn2, parallel);
+				played++;
+			}
+
+			return played;
+		}
+	}
+}
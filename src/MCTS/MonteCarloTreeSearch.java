@@ -1,7 +1,19 @@
 package MCTS;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import Tools.FindWinner;
 //import mpi.*;
 
 /**
@@ -12,6 +24,10 @@ import java.util.Random;
  * should be used here. Wherever possible, such data should be located in the MCGame subclass and
  * used by the public methods of MCGame (getActons and getSuccessorState).
  * 
+ * Each instance is a self-contained search, with its own board, settings, random number generators, and
+ * scratch memory, so searches with different settings can run in the same program. A tree belongs to the
+ * search which created it.
+ * 
  * @author Jared Prince
  * @version 1.0
  * @since 1.0
@@ -20,56 +36,150 @@ import java.util.Random;
 public class MonteCarloTreeSearch {
 
 	/**
-	 * Used to randomly pick actions.
+	 * Used to randomly pick actions. Each thread has its own generator, so a match played on one thread can be
+	 * repeated from its seed.
+	 * @see #setSeed(long)
+	 */
+	private final ThreadLocal<Random> randoms = new ThreadLocal<Random>() {
+		protected Random initialValue() {
+			return new Random();
+		}
+	};
+	
+	/**
+	 * The scratch memory of the simulations of each thread.
+	 * @see #getContext(DotsAndBoxes)
 	 */
-	static Random r = new Random();
+	private final ThreadLocal<SimulationContext> contexts = new ThreadLocal<SimulationContext>();
 
 	/**
 	 * The width (in boxes) of the board.
 	 */
-	static int width;
+	int width;
 
 	/**
 	 * The height (in boxes) of the board.
 	 */
-	static int height;
+	int height;
 
 	/**
 	 * The number of edges on the board.
 	 */
-	static int edges;
+	int edges;
 
 	/**
 	 * The uncertainty constant.
 	 */
-	static double c;
+	double c;
 
 	/**
 	 * The game to use for player one.
 	 */
-	static DotsAndBoxes game = new DotsAndBoxes(2, 2, false, false);
+	DotsAndBoxes game;
 
 	/**
 	 * The game to use for player two.
 	 */
-	static DotsAndBoxes game2;
+	DotsAndBoxes game2;
 
 	/**
 	 * The tree of player one.
 	 */
-	static MCTree tree;
+	MCTree tree;
 
 	/**
 	 * The tree of player two.
 	 */
-	static MCTree tree2;
+	MCTree tree2;
 
 	/**
 	 * A 2D array representing the times taken for each move made by player one.
 	 * Index i is an array of the total time taken by player one during turn i
-	 * (in milliseconds) and the total number of times player one took turn i.
+	 * (in milliseconds), the total number of times player one took turn i, and
+	 * the total number of simulations made by player one during turn i.
+	 */
+	long times[][];
+	
+	/**
+	 * The move times recorded by the matches of each thread. A thread records into times unless it is given
+	 * its own array.
+	 * @see #setMoveTimes(long[][])
+	 */
+	private final ThreadLocal<long[][]> moveTimes = new ThreadLocal<long[][]>();
+	
+	/**
+	 * The seed of the first match. Match i is played with seed + i, so a run can be repeated, even when its
+	 * matches are played at the same time. Only used if seeded is true.
+	 */
+	long seed;
+	
+	/**
+	 * True if the matches are seeded.
+	 */
+	boolean seeded = false;
+	
+	/**
+	 * The number of matches played at the same time, each on its own thread with its own trees.
+	 * @see MatchScheduler
+	 */
+	int matchThreads = 1;
+	
+	/**
+	 * True if player one searches its tree while player two is to move.
+	 * @see Ponder
+	 */
+	boolean ponder = false;
+	
+	/**
+	 * The threads which search player one's trees while player two is to move, one for each match played at
+	 * the same time.
+	 */
+	ExecutorService ponderPool;
+	
+	/**
+	 * The time (in milliseconds) given to each of player one's moves. If 0, the moves are not timed.
+	 */
+	long moveTime = 0;
+	
+	/**
+	 * The time (in milliseconds) given to all of player one's moves in a game, which is divided between the moves
+	 * as the game goes on. If 0, the game is not timed.
+	 */
+	long gameTime = 0;
+	
+	/**
+	 * The number of simulations made between two checks of the time of a timed move.
 	 */
-	static long times[][];
+	int timeCheck = 32;
+	
+	/**
+	 * True if a move ends once its remaining simulations can no longer change the action chosen, or at once when
+	 * the node has a single action.
+	 * @see #isSettled(MCNode, int, int)
+	 */
+	boolean earlyStop = false;
+	
+	/**
+	 * True if the simulations a move of player one did not use are given to its next move.
+	 */
+	boolean carryOver = false;
+	
+	/**
+	 * True if player one's simulations are given to each game as a whole, and divided between its moves by
+	 * how uncertain each move is.
+	 * @see SimulationBudget
+	 */
+	boolean adaptive = false;
+	
+	/**
+	 * The number of simulations made by player one while player two was to move.
+	 */
+	final AtomicLong pondered = new AtomicLong();
+	
+	/**
+	 * The number of the pondered simulations made through the successor of player two's move, which were kept.
+	 */
+	final AtomicLong ponderedKept = new AtomicLong();
 	
 	/*
 	 * The following constants define the behavior of the search. Variations in the MCTS algorithm are
@@ -77,68 +187,290 @@ public class MonteCarloTreeSearch {
 	 */
 	
 	/**
-	 * Defines the behavior in which node creation is dependent upon NODE_CREATION_COUNT.
+	 * Defines the behavior in which node creation is dependent upon the node creation count of the tree.
+	 * @see MCTree#getNodeCreationCount()
 	 */
 	public static final int BEHAVIOR_EXPANSION_STANDARD = 0;
 	
 	/**
-	 * Defines the behavior in which a node is created (if the node does not exist already), regardless of NODE_CREATION_COUNT.
+	 * Defines the behavior in which a node is created (if the node does not exist already), regardless of the node creation count.
 	 */
 	public static final int BEHAVIOR_EXPANSION_ALWAYS = 1;
 	
 	/**
-	 * Defines the behavior in which a node is not created, regardless of NODE_CREATION_COUNT.
+	 * Defines the behavior in which a node is not created, regardless of the node creation count.
 	 */
 	public static final int BEHAVIOR_EXPANSION_NEVER = 2;
 	
 	/**
 	 * Defines the behavior in which only a single node in a new branch is created when expanding the tree.
-	 * (Unimplemented)
 	 */
 	public static final int BEHAVIOR_EXPANSION_SINGLE = 0;
 	
 	/**
 	 * Defines the behavior in which multiple nodes in a new branch are created when expanding the tree.
-	 * (Unimplemented)
+	 * The number of nodes created is given by expansionNodes.
 	 */
 	public static final int BEHAVIOR_EXPANSION_MULTIPLE = 1;
 	
 	/**
 	 * Defines the behavior in which all nodes of a new branch are created when expanding the tree.
-	 * (Unimplemented)
+	 * No playout is made, since the branch reaches the end of the game.
 	 */
 	public static final int BEHAVIOR_EXPANSION_FULL = 2;
 	
 	/**
 	 * Defines the behavior in which unexplored nodes are selected in the order they are tested, and all are selected before 
 	 * any node is selected a second time.
-	 * (Unimplemented)
 	 */
 	public static final int BEHAVIOR_UNEXPLORED_STANDARD = 0;
 	
 	/**
 	 * Defines the behavior in which unexplored nodes are selected using first play urgency (FPU). FPU gives unexplored nodes
 	 * a constant reward value. This value can be tuned to encourage exploitation in the early game.
-	 * (Unimplemented)
+	 * The value used is firstPlayUrgency.
 	 */
 	public static final int BEHAVIOR_UNEXPLORED_FIRST_PLAY_URGENCY = 1;
 	
+	/**
+	 * Defines the behavior in which every action of a node can be selected.
+	 */
+	public static final int BEHAVIOR_WIDENING_NONE = 0;
+	
+	/**
+	 * Defines the behavior in which only the most promising actions of a node (by the static order of the game)
+	 * can be selected. The number of actions grows with the number of times the node is reached.
+	 * @see MCNode#getWidenedActions()
+	 */
+	public static final int BEHAVIOR_WIDENING_PROGRESSIVE = 1;
+	
+	/**
+	 * Defines the behavior in which the value of an action is learned only from simulations which select it.
+	 */
+	public static final int BEHAVIOR_VALUE_STANDARD = 0;
+	
+	/**
+	 * Defines the behavior in which the value of an action is blended with its all-moves-as-first (AMAF) value,
+	 * learned from every simulation in which the action is played later by the same player (RAVE).
+	 * The weight of the AMAF value shrinks as the action is chosen, according to raveEquivalence.
+	 */
+	public static final int BEHAVIOR_VALUE_RAVE = 1;
+	
+	/**
+	 * Defines the behavior in which playouts take random edges.
+	 */
+	public static final int BEHAVIOR_PLAYOUT_RANDOM = 0;
+	
+	/**
+	 * Defines the behavior in which playouts take captures first, then safe edges, and sacrifice boxes only when
+	 * there is nothing else to do.
+	 * @see Position#heuristicEdge(Random)
+	 */
+	public static final int BEHAVIOR_PLAYOUT_HEURISTIC = 1;
+	
+	/**
+	 * Defines the behavior in which simulations are played to the end of the game.
+	 */
+	public static final int BEHAVIOR_ENDGAME_PLAYOUT = 0;
+	
+	/**
+	 * Defines the behavior in which a simulation stops at a simple loony endgame (every box has two or four edges,
+	 * every chain has three or more boxes, and every loop has four or more boxes), which is scored exactly.
+	 * @see #endgame(GameState, int)
+	 */
+	public static final int BEHAVIOR_ENDGAME_EXACT = 1;
+	
+	/**
+	 * The index in behaviors of the expansion behavior.
+	 */
+	public static final int BEHAVIOR_INDEX_EXPANSION = 0;
+	
+	/**
+	 * The index in behaviors of the behavior used to select unexplored nodes.
+	 */
+	public static final int BEHAVIOR_INDEX_UNEXPLORED = 1;
+	
+	/**
+	 * The index in behaviors of the behavior used to expand a new branch.
+	 */
+	public static final int BEHAVIOR_INDEX_BRANCH = 2;
+	
+	/**
+	 * The index in behaviors of the widening behavior.
+	 */
+	public static final int BEHAVIOR_INDEX_WIDENING = 3;
+	
+	/**
+	 * The index in behaviors of the behavior used to value actions.
+	 */
+	public static final int BEHAVIOR_INDEX_VALUE = 4;
+	
+	/**
+	 * The index in behaviors of the playout behavior.
+	 */
+	public static final int BEHAVIOR_INDEX_PLAYOUT = 5;
+	
+	/**
+	 * The index in behaviors of the endgame behavior.
+	 */
+	public static final int BEHAVIOR_INDEX_ENDGAME = 6;
+	
 	/**
 	 * Defines the behaviors to be used during this search.
 	 */
-	static int[] behaviors = {BEHAVIOR_EXPANSION_STANDARD, BEHAVIOR_UNEXPLORED_STANDARD};
+	int[] behaviors = {BEHAVIOR_EXPANSION_STANDARD, BEHAVIOR_UNEXPLORED_STANDARD, BEHAVIOR_EXPANSION_SINGLE,
+			BEHAVIOR_WIDENING_NONE, BEHAVIOR_VALUE_STANDARD, BEHAVIOR_PLAYOUT_RANDOM, BEHAVIOR_ENDGAME_PLAYOUT};
+	
+	/**
+	 * The value returned by endgame when the endgame cannot be scored exactly.
+	 */
+	public static final int ENDGAME_UNKNOWN = Integer.MIN_VALUE;
+	
+	/**
+	 * The number of times an action must be chosen before its own value and its AMAF value are weighted equally
+	 * when using BEHAVIOR_VALUE_RAVE.
+	 */
+	double raveEquivalence = 500;
+	
+	/**
+	 * The policy used to select actions during the search.
+	 */
+	SelectionPolicy policy = new UCB1Policy();
+	
+	/**
+	 * The number of actions which can be selected from a node reached once when using BEHAVIOR_WIDENING_PROGRESSIVE.
+	 */
+	double widenBase = 2;
+	
+	/**
+	 * The exponent of the growth in selectable actions when using BEHAVIOR_WIDENING_PROGRESSIVE. A node reached
+	 * n times has widenBase * n^widenExponent selectable actions.
+	 */
+	double widenExponent = 0.5;
+	
+	/**
+	 * The number of nodes created during a single simulation when using BEHAVIOR_EXPANSION_MULTIPLE.
+	 */
+	int expansionNodes = 2;
+	
+	/**
+	 * The number of times an action must be selected before a node is created for it. Given to each new tree.
+	 */
+	int expansionThreshold = 1;
+	
+	/**
+	 * The number of nodes a tree must gain before its expansion threshold is raised by one. If 0, the
+	 * threshold never changes. Given to each new tree.
+	 */
+	int expansionGrowth = 0;
+	
+	/**
+	 * The value given to an unexplored action when using BEHAVIOR_UNEXPLORED_FIRST_PLAY_URGENCY. Since rewards
+	 * range from -1 to 1, lower values make the search exploit a promising action longer before trying its siblings.
+	 */
+	double firstPlayUrgency = 0.5;
+	
+	/**
+	 * The number of playouts made from the leaf of each simulation. The results are backed up together.
+	 */
+	int leafPlayouts = 1;
+	
+	/**
+	 * The number of threads used to make the playouts of a leaf. If 1, the playouts are made by the searching thread.
+	 */
+	int leafThreads = 1;
+	
+	/**
+	 * The threads which make leaf playouts when leafThreads is greater than 1.
+	 */
+	ExecutorService leafPool;
+	
+	/**
+	 * The number of free edges at or below which a position is solved exactly by the endgame solver instead of
+	 * being simulated. If 0, the solver is not used.
+	 * @see EndgameSolver
+	 */
+	int solverEdges = 0;
+	
+	/**
+	 * The number of threads which search player one's tree at the same time (tree parallelism). If 1, the tree
+	 * is searched by the main thread.
+	 * @see TreeSearch
+	 */
+	int treeThreads = 1;
+	
+	/**
+	 * The number of losses added to an action each time a thread of a tree-parallel search selects it, until
+	 * its simulation is backed up. Larger values spread the threads over more lines.
+	 */
+	int virtualLoss = 1;
+	
+	/**
+	 * The threads of a tree-parallel search.
+	 */
+	ExecutorService treePool;
 	
 	/*------------------Parallel MCTS-----------------------*/
 	/**
 	 * The number of simulations made before sharing data between two parallel trees.
 	 */
-	static int shareInfoEvery;
+	int shareInfoEvery;
 	
-	static int rank;
+	int rank;
 	static final boolean TESTPRINT= false;
-	static int maxTasks=2;
+	int maxTasks=2;
+	
+	/**
+	 * The threads which search the trees of a root-parallel search.
+	 */
+	ExecutorService rootPool;
+	
+	/**
+	 * The number of worker processes which search with player one in a distributed search. If 0, the search is
+	 * not distributed.
+	 * @see SearchCoordinator
+	 */
+	int workers = 0;
+	
+	/**
+	 * The port on which the coordinator of a distributed search waits for its workers.
+	 */
+	int port = 7050;
+	
+	/**
+	 * The number of levels of the tree, starting with the current node, whose statistics are shared between the
+	 * processes of a distributed search.
+	 */
+	int shareDepth = 2;
+	
+	/**
+	 * The coordinator of player one's distributed search, or null if the search is not distributed.
+	 */
+	SearchCoordinator coordinator;
 	/*------------------------------------------------------*/
 
+	/**
+	 * Constructor for the MonteCarloTreeSearch. The board must be set before the search is used.
+	 * @see #setBoard(int, int)
+	 */
+	public MonteCarloTreeSearch() {
+	}
+	
+	/**
+	 * Constructor for the MonteCarloTreeSearch.
+	 * 
+	 * @param width
+	 *            The width (in boxes) of the board.
+	 * @param height
+	 *            The height (in boxes) of the board.
+	 * @param c
+	 *            The uncertainty constant.
+	 */
+	public MonteCarloTreeSearch(int width, int height, double c) {
+		setBoard(width, height);
+		this.c = c;
+	}
+
 	/**
 	 * @param args
 	 *            width, height, c, matches, sims1, scored1,
@@ -150,15 +482,42 @@ public class MonteCarloTreeSearch {
 	 *            
 	 *            If parallel:
 	 *            	shareInfoEvery, tasks
+	 *            
+	 *            Optional:
+	 *            	fpu (enables first play urgency with the given value),
+	 *            	expansion (single, multiple, or full), expansionNodes,
+	 *            	expansionThreshold, expansionGrowth, widening (true for progressive widening),
+	 *            	widenBase, widenExponent, rave (true for RAVE), raveEquivalence,
+	 *            	policy (ucb1, ucb1tuned, klucb, or thompson), playout (random or heuristic),
+	 *            	endgame (true to score simple loony endgames exactly),
+	 *            	leafPlayouts (playouts per leaf), leafThreads (threads making the playouts of a leaf),
+	 *            	solver (the number of free edges at which positions are solved exactly),
+	 *            	treeThreads (threads searching player one's tree), virtualLoss,
+	 *            	workers (the number of SearchWorker processes player one waits for),
+	 *            	port (the port on which the workers connect), shareDepth,
+	 *            	seed (the seed of the first match), matchThreads (matches played at the same time),
+	 *            	ponder (true for player one to search while player two is to move),
+	 *            	moveTime (milliseconds per move for player one), gameTime (milliseconds per game for player
+	 *            	one), timeCheck (simulations between checks of the time); sims1 is then the largest number of
+	 *            	simulations per move, and is not needed,
+	 *            	earlyStop (true to end a move once its action cannot change), carryOver (true to give the
+	 *            	simulations a move did not use to the next move),
+	 *            	adaptive (true to give player one at most sims1 simulations per move over a game, spending more
+	 *            	on the uncertain moves than on the obvious ones)
 	 */
 	public static void main(String[] args) /*throws MPIException*/ {
 
 		long s = System.currentTimeMillis();
 		
+		MonteCarloTreeSearch search = new MonteCarloTreeSearch();
+		
 		int matches = 0, sims1 = 0, sims2 = 0, opponent = 0;
 		boolean scored1 = false, scored2 = false, sym1 = false, sym2 = false, parallel = false;
 		
-		boolean[] params = new boolean[14];
+		boolean[] params = new boolean[44];
+		
+		/* the settings of the search, which are given to the workers of a distributed search */
+		ArrayList<String> searchArgs = new ArrayList<String>();
 		
 		for (int i = 0; i < args.length; i++) {
 			String arg = args[i];
@@ -168,15 +527,15 @@ public class MonteCarloTreeSearch {
 			switch (arg.substring(0, index - 1)) {
 
 			case "width":
-				width = Integer.parseInt(arg.substring(index));
+				search.width = Integer.parseInt(arg.substring(index));
 				params[0] = true;
 				break;
 			case "height":
-				height = Integer.parseInt(arg.substring(index));
+				search.height = Integer.parseInt(arg.substring(index));
 				params[1] = true;
 				break;
 			case "c":
-				c = Double.parseDouble(arg.substring(index));
+				search.c = Double.parseDouble(arg.substring(index));
 				params[2] = true;
 				break;
 			case "matches":
@@ -216,14 +575,81 @@ public class MonteCarloTreeSearch {
 				params[11] = true;
 				break;
 			case "shareInfoEvery":
-				shareInfoEvery = Integer.parseInt(arg.substring(index));
+				search.shareInfoEvery = Integer.parseInt(arg.substring(index));
 				params[12] = true;
 				break;
 			
 			case "tasks":
-				maxTasks = Integer.parseInt(arg.substring(index));
+				search.maxTasks = Integer.parseInt(arg.substring(index));
 				params[13] = true;
 				break;
+				
+			case "workers":
+				search.workers = Integer.parseInt(arg.substring(index));
+				params[32] = true;
+				break;
+				
+			case "port":
+				search.port = Integer.parseInt(arg.substring(index));
+				params[33] = true;
+				break;
+				
+			case "shareDepth":
+				search.shareDepth = Integer.parseInt(arg.substring(index));
+				params[34] = true;
+				break;
+				
+			case "seed":
+				search.seed = Long.parseLong(arg.substring(index));
+				search.seeded = true;
+				params[35] = true;
+				break;
+				
+			case "matchThreads":
+				search.matchThreads = Integer.parseInt(arg.substring(index));
+				params[36] = true;
+				break;
+				
+			case "ponder":
+				search.ponder = Boolean.parseBoolean(arg.substring(index));
+				params[37] = true;
+				break;
+				
+			case "moveTime":
+				search.moveTime = Long.parseLong(arg.substring(index));
+				params[38] = true;
+				break;
+				
+			case "gameTime":
+				search.gameTime = Long.parseLong(arg.substring(index));
+				params[39] = true;
+				break;
+				
+			case "timeCheck":
+				search.timeCheck = Math.max(1, Integer.parseInt(arg.substring(index)));
+				params[40] = true;
+				break;
+				
+			case "carryOver":
+				search.carryOver = Boolean.parseBoolean(arg.substring(index));
+				params[42] = true;
+				break;
+				
+			case "adaptive":
+				search.adaptive = Boolean.parseBoolean(arg.substring(index));
+				params[43] = true;
+				break;
+				
+			default:
+				try {
+					if (search.setSearchParameter(arg.substring(0, index - 1), arg.substring(index), params)) {
+						searchArgs.add(arg);
+					}
+				} catch (IllegalArgumentException e) {
+					System.out.println(e.getMessage());
+					return;
+				}
+				break;
 			}
 		}
 		
@@ -246,8 +672,18 @@ public class MonteCarloTreeSearch {
 			missingParams = true;
 		}
 		if (!params[4]) {
-			System.out.println("Missing Parameter: sims1");
-			missingParams = true;
+			/* a timed player searches until its time is up */
+			if (search.moveTime > 0 || search.gameTime > 0) {
+				sims1 = Integer.MAX_VALUE;
+				
+				if (!params[5]) {
+					System.out.println("Missing Parameter: sims2");
+					missingParams = true;
+				}
+			} else {
+				System.out.println("Missing Parameter: sims1");
+				missingParams = true;
+			}
 		}
 		if (!params[5]) {
 			sims2 = sims1;
@@ -294,36 +730,50 @@ public class MonteCarloTreeSearch {
 			}
 		}
 		
+		/* the workers of a distributed search follow one game at a time */
+		if(search.workers > 0 && search.matchThreads > 1){
+			System.out.println("Invalid Parameter: matchThreads");
+			missingParams = true;
+		}
+		
+		/* the workers of a distributed search are given simulations, not time */
+		if(search.workers > 0 && (search.moveTime > 0 || search.gameTime > 0)){
+			System.out.println("Invalid Parameter: " + (search.moveTime > 0 ? "moveTime" : "gameTime"));
+			missingParams = true;
+		}
+		
+		/* the budget is divided between the moves of one tree's search, counted in simulations */
+		if(search.adaptive && (parallel || search.workers > 0 || search.moveTime > 0 || search.gameTime > 0)){
+			System.out.println("Invalid Parameter: adaptive");
+			missingParams = true;
+		}
+		
 		if(missingParams){
 			return;
 		}
 		
 		/* All parameters present and valid - Game can begin */
 		
-		edges = (height * (width + 1)) + (width * (height + 1));
-		times = new long[edges][2];
-		game = new DotsAndBoxes(height, width, scored1, sym1);
+		search.setBoard(search.width, search.height);
+		search.game = new DotsAndBoxes(search.height, search.width, scored1, sym1);
 		
-		if(parallel){
-//			game2 = new DotsAndBoxes(height, width, scored1, sym1);
-//			
-//			if(maxTasks>1){
-//				MPI.Init(args);
-//				rank = MPI.COMM_WORLD.getRank();
-//				competitionParallel(tree, game, tree2, game2, sims1/maxTasks, sims2/maxTasks, matches);
-//				MPI.Finalize();
-//			}
-//			else{
-//				rank=-1;
-//				competitionParallel(tree, game, tree2, game2, sims1, sims2, matches);
-//			}
+		/* player one shares its search with the workers, which search with the same settings */
+		if(search.workers > 0){
+			System.out.println("Waiting for " + search.workers + " workers on port " + search.port);
+			search.coordinator = new SearchCoordinator(search, search.port, search.workers, search.shareDepth);
+			search.coordinator.configure(search.width, search.height, scored1, sym1, search.c, searchArgs);
+		}
+		
+		/* player one searches maxTasks trees on as many threads when parallel */
+		if(opponent == 1){
+			search.game2 = new DotsAndBoxes(search.height, search.width, scored2, sym2);
+			search.competition(search.tree, search.game, search.tree2, search.game2, sims1, sims2, matches, parallel);
 		} else {
-			if(opponent == 1){
-				game2 = new DotsAndBoxes(height, width, scored2, sym2);
-				competition(tree, game, tree2, game2, sims1, sims2, matches);
-			} else {
-				competition(tree, game, null, null, sims1, sims2, matches);
-			}
+			search.competition(search.tree, search.game, null, null, sims1, sims2, matches, parallel);
+		}
+		
+		if(search.coordinator != null){
+			search.coordinator.close();
 		}
 
 		System.out.println(System.currentTimeMillis() - s);
@@ -331,18 +781,295 @@ public class MonteCarloTreeSearch {
 	}
 	
 	/**
+	 * Sets one of the settings of the search which are given to every tree of player one (all but the board,
+	 * the players, and the matches).
 	 * 
-	 * @param state The current state of the game. 
-	 * @param controllerNetScore The net score for the player currently in control.
-	 * @return True if the player in control wins, false otherwise.
+	 * @param name
+	 *            The name of the parameter.
+	 * @param value
+	 *            The value of the parameter.
+	 * @param params
+	 *            The parameters given so far. The position of this parameter is set to true.
+	 * @return True if the parameter is a setting of the search, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             If the value of the parameter is not valid.
 	 */
-	public boolean endgame(GameState state, int controllerNetScore){
-		
-		
+	boolean setSearchParameter(String name, String value, boolean[] params) {
+		switch (name) {
+		case "fpu":
+			firstPlayUrgency = Double.parseDouble(value);
+			behaviors[BEHAVIOR_INDEX_UNEXPLORED] = BEHAVIOR_UNEXPLORED_FIRST_PLAY_URGENCY;
+			params[14] = true;
+			break;
+			
+		case "expansion":
+			switch (value) {
+			case "single":
+				behaviors[BEHAVIOR_INDEX_BRANCH] = BEHAVIOR_EXPANSION_SINGLE;
+				break;
+			case "multiple":
+				behaviors[BEHAVIOR_INDEX_BRANCH] = BEHAVIOR_EXPANSION_MULTIPLE;
+				break;
+			case "full":
+				behaviors[BEHAVIOR_INDEX_BRANCH] = BEHAVIOR_EXPANSION_FULL;
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid Parameter: expansion");
+			}
+			params[15] = true;
+			break;
+			
+		case "expansionNodes":
+			expansionNodes = Integer.parseInt(value);
+			params[16] = true;
+			break;
+			
+		case "expansionThreshold":
+			expansionThreshold = Integer.parseInt(value);
+			params[17] = true;
+			break;
+			
+		case "expansionGrowth":
+			expansionGrowth = Integer.parseInt(value);
+			params[18] = true;
+			break;
+			
+		case "widening":
+			behaviors[BEHAVIOR_INDEX_WIDENING] = Boolean.parseBoolean(value)
+					? BEHAVIOR_WIDENING_PROGRESSIVE : BEHAVIOR_WIDENING_NONE;
+			params[19] = true;
+			break;
+			
+		case "widenBase":
+			widenBase = Double.parseDouble(value);
+			params[20] = true;
+			break;
+			
+		case "widenExponent":
+			widenExponent = Double.parseDouble(value);
+			params[21] = true;
+			break;
+			
+		case "rave":
+			behaviors[BEHAVIOR_INDEX_VALUE] = Boolean.parseBoolean(value)
+					? BEHAVIOR_VALUE_RAVE : BEHAVIOR_VALUE_STANDARD;
+			params[22] = true;
+			break;
+			
+		case "raveEquivalence":
+			raveEquivalence = Double.parseDouble(value);
+			params[23] = true;
+			break;
+			
+		case "policy":
+			switch (value) {
+			case "ucb1":
+				policy = new UCB1Policy();
+				break;
+			case "ucb1tuned":
+				policy = new UCB1TunedPolicy();
+				break;
+			case "klucb":
+				policy = new KLUCBPolicy();
+				break;
+			case "thompson":
+				policy = new ThompsonPolicy(this);
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid Parameter: policy");
+			}
+			params[24] = true;
+			break;
+			
+		case "playout":
+			switch (value) {
+			case "random":
+				behaviors[BEHAVIOR_INDEX_PLAYOUT] = BEHAVIOR_PLAYOUT_RANDOM;
+				break;
+			case "heuristic":
+				behaviors[BEHAVIOR_INDEX_PLAYOUT] = BEHAVIOR_PLAYOUT_HEURISTIC;
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid Parameter: playout");
+			}
+			params[25] = true;
+			break;
+			
+		case "endgame":
+			behaviors[BEHAVIOR_INDEX_ENDGAME] = Boolean.parseBoolean(value)
+					? BEHAVIOR_ENDGAME_EXACT : BEHAVIOR_ENDGAME_PLAYOUT;
+			params[26] = true;
+			break;
+			
+		case "leafPlayouts":
+			leafPlayouts = Integer.parseInt(value);
+			params[27] = true;
+			break;
+			
+		case "leafThreads":
+			leafThreads = Integer.parseInt(value);
+			params[28] = true;
+			break;
+			
+		case "solver":
+			solverEdges = Integer.parseInt(value);
+			params[29] = true;
+			break;
+			
+		case "treeThreads":
+			treeThreads = Integer.parseInt(value);
+			params[30] = true;
+			break;
+			
+		case "virtualLoss":
+			virtualLoss = Integer.parseInt(value);
+			params[31] = true;
+			break;
+			
+		case "earlyStop":
+			earlyStop = Boolean.parseBoolean(value);
+			params[41] = true;
+			break;
+			
+		default:
+			return false;
+		}
 		
 		return true;
 	}
-
+	
+	/**
+	 * Scores a loony endgame exactly. The player in control is the player who is not
+	 * to move, since any move made by the player to move gives away boxes.
+	 * 
+	 * @param state The current state of the game. Every box must have two or four edges.
+	 * @param controllerNetScore The net score for the player currently in control.
+	 * @return 1 if the player in control wins, -1 if the player in control loses, 0 for a tie,
+	 *         or ENDGAME_UNKNOWN if the endgame is not a simple loony endgame.
+	 */
+	public int endgame(GameState state, int controllerNetScore){
+		int[][] chainsAndLoops = game.getChainsAndLoops(state, width, height);
+		int value = getEndgameValue(chainsAndLoops[0], chainsAndLoops[1]);
+		
+		if(value == ENDGAME_UNKNOWN){
+			return ENDGAME_UNKNOWN;
+		}
+		
+		int net = controllerNetScore + value;
+		
+		return net > 0 ? 1 : net < 0 ? -1 : 0;
+	}
+	
+	/**
+	 * Scores a loony endgame exactly, using the chains and loops kept by the position.
+	 * 
+	 * @param position The current position. Every box must have two or four edges.
+	 * @param controllerNetScore The net score for the player currently in control.
+	 * @return 1 if the player in control wins, -1 if the player in control loses, 0 for a tie,
+	 *         or ENDGAME_UNKNOWN if the endgame is not a simple loony endgame.
+	 */
+	public static int endgame(Position position, int controllerNetScore){
+		ChainStructure structure = position.chains;
+		structure.update();
+		
+		int[] chainCounts = structure.chainCounts;
+		int[] loopCounts = structure.loopCounts;
+		
+		/* the solution applies only to simple loony endgames */
+		for(int i = 1; i < 4 && i < chainCounts.length; i++){
+			if((i < 3 && chainCounts[i] > 0) || loopCounts[i] > 0){
+				return ENDGAME_UNKNOWN;
+			}
+		}
+		
+		/* most endgames have been seen before */
+		int value = FindWinner.getCachedValue(structure.getKey());
+		
+		if(value == FindWinner.NOT_CACHED){
+			value = getEndgameValue(toLengths(chainCounts), toLengths(loopCounts));
+		}
+		
+		int net = controllerNetScore + value;
+		
+		return net > 0 ? 1 : net < 0 ? -1 : 0;
+	}
+	
+	/**
+	 * Lists the lengths counted in a histogram in increasing order.
+	 * 
+	 * @param counts Position i is the number of components of length i.
+	 * @return The lengths.
+	 */
+	private static int[] toLengths(int[] counts){
+		int total = 0;
+		
+		for(int i = 1; i < counts.length; i++){
+			total += counts[i];
+		}
+		
+		int[] lengths = new int[total];
+		int index = 0;
+		
+		for(int i = 1; i < counts.length; i++){
+			for(int j = 0; j < counts[i]; j++){
+				lengths[index] = i;
+				index++;
+			}
+		}
+		
+		return lengths;
+	}
+	
+	/**
+	 * Gets the net value of a simple loony endgame for the player in control, given optimal play.
+	 * 
+	 * @param chains The lengths of the chains on the board. Positions with length 0 are ignored.
+	 * @param loops The lengths of the loops on the board. Positions with length 0 are ignored.
+	 * @return The net number of remaining boxes the player in control will take, or ENDGAME_UNKNOWN if
+	 *         there is a chain shorter than three or a loop shorter than four.
+	 */
+	public static int getEndgameValue(int[] chains, int[] loops){
+		chains = removeEmpty(chains);
+		loops = removeEmpty(loops);
+		
+		/* the solution applies only to simple loony endgames */
+		if((chains.length > 0 && chains[0] < 3) || (loops.length > 0 && loops[0] < 4)){
+			return ENDGAME_UNKNOWN;
+		}
+		
+		return FindWinner.getCachedValue(chains, loops);
+	}
+	
+	/**
+	 * Removes the zeros from an array of lengths and sorts it.
+	 * 
+	 * @param lengths The array of lengths.
+	 * @return The sorted, non-zero lengths.
+	 */
+	private static int[] removeEmpty(int[] lengths){
+		int count = 0;
+		
+		for(int i = 0; i < lengths.length; i++){
+			if(lengths[i] > 0){
+				count++;
+			}
+		}
+		
+		int[] result = new int[count];
+		count = 0;
+		
+		for(int i = 0; i < lengths.length; i++){
+			if(lengths[i] > 0){
+				result[count] = lengths[i];
+				count++;
+			}
+		}
+		
+		Arrays.sort(result);
+		
+		return result;
+	}
+
 	/**
 	 * Plays a number of games between two MCTS players.
 	 * 
@@ -360,9 +1087,11 @@ public class MonteCarloTreeSearch {
 	 *            The number of simulations given to player two.
 	 * @param matches
 	 *            The number of games to be played.
+	 * @param parallel
+	 *            True if player one uses a root-parallel search.
 	 */
-	public static void competition(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
-			int simulationsPerTurn1, int simulationsPerTurn2, int matches) /*throws MPIException*/ {
+	public void competition(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
+			int simulationsPerTurn1, int simulationsPerTurn2, int matches, boolean parallel) /*throws MPIException*/ {
 		int wins = 0;
 		int losses = 0;
 		int draws = 0;
@@ -370,9 +1099,27 @@ public class MonteCarloTreeSearch {
 		double totalAveDepth = 0;
 		long totalNodes = 0;
 
-		/* plays a match */
-		for (int i = matches; i > 0; i--) {
-			double[] results = match(tree, game, tree2, game2, simulationsPerTurn1, simulationsPerTurn2, false);
+		double[][] matchResults;
+
+		if (matchThreads > 1) {
+			matchResults = new MatchScheduler(this, matchThreads).play(game, game2, simulationsPerTurn1, simulationsPerTurn2,
+					matches, parallel);
+		} else {
+			matchResults = new double[matches][];
+
+			/* plays a match */
+			for (int i = 0; i < matches; i++) {
+				if (seeded) {
+					setSeed(seed + i);
+				}
+
+				matchResults[i] = match(tree, game, tree2, game2, simulationsPerTurn1, simulationsPerTurn2, parallel);
+			}
+		}
+
+		/* the results are added in the order of the matches, however they were played */
+		for (int i = 0; i < matches; i++) {
+			double[] results = matchResults[i];
 			int result = (int) results[0];
 			totalAveDepth += results[1];
 			totalNodes += results[2];
@@ -386,20 +1133,47 @@ public class MonteCarloTreeSearch {
 			}
 		}
 
+		/* a timed player one has no simulation limit */
+		String sims1 = simulationsPerTurn1 == Integer.MAX_VALUE ? "timed" : String.valueOf(simulationsPerTurn1);
+		
+		if (moveTime > 0 || gameTime > 0) {
+			sims1 += "(" + (moveTime > 0 ? moveTime + "ms/move" : "") + (moveTime > 0 && gameTime > 0 ? "," : "")
+					+ (gameTime > 0 ? gameTime + "ms/game" : "") + ")";
+		}
+		
+		if (adaptive) {
+			sims1 += "(adaptive)";
+		}
+
 		/* Results */
-		System.out.println(height + "x" + width + " c=" + c + " matches=" + matches + " sims=" + simulationsPerTurn1
+		System.out.println(height + "x" + width + " c=" + c + " matches=" + matches + " sims=" + sims1
 				+ "," + simulationsPerTurn2 + " p1=" + (game.scored ? "sc+" : "nsc+")
 				+ (game.asymmetrical ? "s" : "ns") + " p2=" + (game2.scored ? "sc+" : "nsc+")
 				+ (game2.asymmetrical ? "s" : "ns") + " w=" + wins + " l=" + losses + " d=" + draws);
 		System.out.println("Average nodes: " + totalNodes / matches);
-		System.out.println("average depth: " + (totalAveDepth / matches) + "\nAverage Time: ");
+		System.out.println("average depth: " + (totalAveDepth / matches));
+		
+		if (ponder) {
+			System.out.println("Pondered simulations: " + pondered.get() + " (kept: " + ponderedKept.get() + ")");
+		}
+		
+		long simulations = 0;
+		
+		for (int i = 0; i < times.length; i++) {
+			simulations += times[i][2];
+		}
+		
+		System.out.println("Average simulations per game: " + simulations / matches);
+		
+		System.out.println("Average Time: ");
 
 		for (int i = 0; i < times.length; i++) {
 			if (times[i][1] == 0) {
 				continue;
 			}
 
-			System.out.println("Move " + i + ": " + times[i][0] / times[i][1]);
+			System.out.println("Move " + i + ": " + times[i][0] / times[i][1] + " (simulations: "
+					+ times[i][2] / times[i][1] + ")");
 		}
 	}
 
@@ -422,11 +1196,11 @@ public class MonteCarloTreeSearch {
 	 * @return An array of the form {result, average depth of the final tree for
 	 *         player one, number of nodes in the final tree for player one}.
 	 */
-	public static double[] match(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
+	public double[] match(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
 			int simulationsPerTurn1, int simulationsPerTurn2, boolean parallel) /*throws MPIException*/ {
 
-		tree = game.scored ? new MCTree(game, new GameStateScored(0, 0)) : new MCTree(game, new GameState(0));
-		tree2 = game2.scored ? new MCTree(game2, new GameStateScored(0, 0)) : new MCTree(game2, new GameState(0));
+		tree = newTree(game);
+		tree2 = newTree(game2);
 
 		int result = -10;
 
@@ -438,7 +1212,7 @@ public class MonteCarloTreeSearch {
 		 */
 		while (result == -10) {
 			if(parallel){
-//				result = testGameParallel(tree, game, tree2, game2, simulationsPerTurn1, simulationsPerTurn2);
+				result = testGameParallel(tree, game, tree2, game2, simulationsPerTurn1, simulationsPerTurn2);
 			}
 			else
 				result = testGame(tree, game, tree2, game2, simulationsPerTurn1, simulationsPerTurn2);
@@ -469,17 +1243,93 @@ public class MonteCarloTreeSearch {
 	 *            The number of simulations given to player two.
 	 * @return An integer representing the result for player one.
 	 */
-	public static int testGame(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
+	public int testGame(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
+			int simulationsPerTurn1, int simulationsPerTurn2) {
+		return testGame(tree, game, tree2, game2, simulationsPerTurn1, simulationsPerTurn2, null);
+	}
+
+	/**
+	 * Plays a single game between two MCTS players, where player one uses a
+	 * root-parallel search. Player one searches maxTasks trees at the same
+	 * time, which share the statistics of their roots every shareInfoEvery
+	 * simulations. The simulations of player one are divided between the
+	 * trees.
+	 * 
+	 * @param tree
+	 *            The tree for player one.
+	 * @param game
+	 *            The game for player one.
+	 * @param tree2
+	 *            The tree for player two.
+	 * @param game2
+	 *            The game for player two.
+	 * @param simulationsPerTurn1
+	 *            The number of simulations given to player one.
+	 * @param simulationsPerTurn2
+	 *            The number of simulations given to player two.
+	 * @return An integer representing the result for player one.
+	 */
+	public int testGameParallel(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
 			int simulationsPerTurn1, int simulationsPerTurn2) {
 
-		GameState terminalState = null;
+		RootSearch[] searches = new RootSearch[Math.max(1, maxTasks)];
+		searches[0] = new RootSearch(tree, game);
 
-		if (edges > 60) {
-			terminalState = new GameState(new BigInteger("2").pow(edges).subtract(new BigInteger("1")));
-		} else {
-			terminalState = new GameState((long) Math.pow(2, edges) - 1);
+		for (int i = 1; i < searches.length; i++) {
+			searches[i] = new RootSearch(newTree(game), game);
+		}
+
+		int simulations = Math.max(1, simulationsPerTurn1 / searches.length);
+
+		return testGame(tree, game, tree2, game2, simulations, simulationsPerTurn2, searches);
+	}
+
+	/**
+	 * Plays a single game between two MCTS players.
+	 * 
+	 * @param tree
+	 *            The tree for player one.
+	 * @param game
+	 *            The game for player one.
+	 * @param tree2
+	 *            The tree for player two.
+	 * @param game2
+	 *            The game for player two.
+	 * @param simulationsPerTurn1
+	 *            The number of simulations given to player one (to each tree
+	 *            of a root-parallel search).
+	 * @param simulationsPerTurn2
+	 *            The number of simulations given to player two.
+	 * @param searches
+	 *            The trees of player one's root-parallel search, the first of
+	 *            which is tree, or null if player one searches only tree.
+	 * @return An integer representing the result for player one.
+	 */
+	public int testGame(MCTree tree, DotsAndBoxes game, MCTree tree2, DotsAndBoxes game2,
+			int simulationsPerTurn1, int simulationsPerTurn2, RootSearch[] searches) {
+
+		GameState terminalState = getTerminalState();
+
+		// the workers of a distributed search start a new tree
+		if (coordinator != null) {
+			coordinator.newGame(tree);
 		}
 
+		// the move times of this thread
+		long[][] moveTimes = getMoveTimes();
+		
+		// player one's search during player two's turns
+		Ponder ponderer = ponder ? new Ponder(this, tree, game, terminalState) : null;
+		
+		// the time left for player one's moves in this game (in nanoseconds)
+		long clock = gameTime * 1000000;
+		
+		// the simulations player one's last move did not use
+		int saved = 0;
+		
+		// player one's simulations for the game, sims1 for each of its moves, spent where the moves are uncertain
+		SimulationBudget budget = adaptive ? new SimulationBudget(this, simulationsPerTurn1) : null;
+
 		// the current node of each tree
 		MCNode currentNode = tree.root;
 		MCNode currentNode2 = tree2.root;
@@ -489,15 +1339,6 @@ public class MonteCarloTreeSearch {
 		boolean playerOneTurn = true;
 		int p1Score = 0;
 		int p2Score = 0;
-		
-		//the number of boxes that are completed or have two edges
-		int twoOrFour = 0;
-		
-		//board[i] is the number of taken edges for box i
-		int[] board = new int[width * height];
-		
-		//a clone to pass to the simulate method
-		int[] boardClone = new int[width * height];
 
 		// for every turn
 		while (!currentNode.state.equals(terminalState)) {
@@ -506,51 +1347,71 @@ public class MonteCarloTreeSearch {
 				break;
 			}
 
-			int sims = playerOneTurn ? simulationsPerTurn1 : simulationsPerTurn2;
+			int sims = playerOneTurn ? simulationsPerTurn1 + saved : simulationsPerTurn2;
 
 			// get the action based on the current player
 			if (playerOneTurn) {
-				long start = System.currentTimeMillis();
-
-				// perform the simulations for this move
-				while (sims > 0) {
-					// give player one's game, tree, node, and score
-					simulate(currentNode.state, p1Score - p2Score, currentNode, terminalState, tree, game, boardClone, twoOrFour);
-					sims--;
+				long start = System.nanoTime();
+				long deadline = getDeadline(start, clock, currentNode.depth);
+				int made;
+
+				if (budget != null) {
+					// perform as many of the game's simulations as this move needs (the budget keeps the share of a
+					// single action)
+					made = budget.search(currentNode, p1Score - p2Score, terminalState, tree, game);
+				} else if (earlyStop && currentNode.links.length == 1) {
+					// a single action needs no search
+					made = 0;
+				} else if (searches != null) {
+					// perform the simulations for this move on every tree of the search
+					made = simulateParallel(searches, p1Score - p2Score, sims, terminalState, deadline);
+				} else if (coordinator != null) {
+					// perform the simulations for this move on this process and every worker
+					made = coordinator.simulate(currentNode, p1Score - p2Score, sims, terminalState, tree, game);
+				} else {
+					// perform the simulations for this move, stopping once the result is proven or the time is up
+					made = search(currentNode, p1Score - p2Score, sims, terminalState, tree, game, deadline);
 				}
 
-				long end = System.currentTimeMillis();
-				times[currentNode.depth][1]++;
-				times[currentNode.depth][0] = times[currentNode.depth][0] + (end - start);
+				long end = System.nanoTime();
+				clock -= end - start;
+				moveTimes[currentNode.depth][1]++;
+				moveTimes[currentNode.depth][0] = moveTimes[currentNode.depth][0] + (end - start) / 1000000;
+				moveTimes[currentNode.depth][2] += made;
+				
+				// only a search of one tree counts the simulations of the whole move
+				if (carryOver && searches == null && coordinator == null && sims != Integer.MAX_VALUE) {
+					saved = sims - made;
+				}
 				
-				action = currentNode.getNextAction(0);
+				action = currentNode.getNextAction(0, p1Score - p2Score);
 			} else {
-				// perform the simulations for this move
-				while (sims > 0) {
+				// player one keeps searching its own tree until player two has moved
+				if (ponderer != null) {
+					ponderer.start(getPonderPool(), currentNode, p2Score - p1Score);
+				}
+				
+				// perform the simulations for this move, stopping once the result is proven
+				while (sims > 0 && currentNode2.getProof(p2Score - p1Score) == MCNode.PROVEN_NONE) {
 					// give player two's game, tree, node, and score
-					simulate(currentNode2.state, p2Score - p1Score, currentNode2, terminalState, tree2, game2, boardClone, twoOrFour);
+					simulate(currentNode2.state, p2Score - p1Score, currentNode2, terminalState, tree2, game2);
 					sims--;
 				}
 
-				action = currentNode2.getNextAction(0);
-			}
-			
-			// get the points for this move
-			int taken = 0;
-			
-			// increment the edges for each box which adjoins action
-			for(int i = 0; i < game.edgeBoxes[action].length; i++){
-				board[game.edgeBoxes[action][i]]++;
-				boardClone[game.edgeBoxes[action][i]]++;
+				action = currentNode2.getNextAction(0, p2Score - p1Score);
 				
-				if(board[game.edgeBoxes[action][i]] == 4){
-					taken++;
-					twoOrFour++;
-				} else if (board[game.edgeBoxes[action][i]] == 2){
-					twoOrFour++;
+				if (ponderer != null) {
+					pondered.addAndGet(ponderer.stop());
 				}
 			}
 			
+			// the node of player one's tree before the move, followed by the workers of a distributed search
+			MCNode previousNode = currentNode;
+			
+			// get the points for this move (the action belongs to the state of the mover's tree)
+			int taken = playerOneTurn ? game.completedBoxesForEdge(action, currentNode.state)
+					: game2.completedBoxesForEdge(action, currentNode2.state);
+			
 			//if both players are symmetrical or both are asymmetrical, the same moves are possible for each
 			if(game.asymmetrical == game2.asymmetrical){
 				// update the currentNodes
@@ -625,6 +1486,29 @@ public class MonteCarloTreeSearch {
 				System.out.println("Move Error: " + (playerOneTurn ? "Player 1" : "Player 2"));
 				return -10;
 			}
+			
+			if (coordinator != null) {
+				coordinator.follow(previousNode, currentNode);
+			}
+			
+			// the pondered simulations below player two's move are kept by the new node
+			if (ponderer != null && !playerOneTurn) {
+				ponderedKept.addAndGet(ponderer.getKept(currentNode));
+			}
+			
+			/* the other trees of a root-parallel search follow player one's tree */
+			if (searches != null) {
+				searches[0].node = currentNode;
+				
+				for (int i = 1; i < searches.length; i++) {
+					searches[i].node = searches[i].node.getNode(currentNode.state, BEHAVIOR_EXPANSION_ALWAYS);
+					
+					if (searches[i].node == null) {
+						System.out.println("Null Error: Player 1 (tree " + i + ")");
+						return -10;
+					}
+				}
+			}
 
 			if (playerOneTurn) {
 				p1Score += taken;
@@ -657,74 +1541,225 @@ public class MonteCarloTreeSearch {
 	 *            loss, 0 for a tie, and 1 for a win).
 	 */
 	public static void backup(MCNode[] nodes, boolean[] player, int[] actions, int result) {
+		backup(nodes, player, actions, result, result * result, 1);
+	}
+
+	/**
+	 * Updates the nodes played in a game with the combined results of several
+	 * playouts made from the same leaf.
+	 * 
+	 * @param nodes
+	 *            An array of all nodes traversed during the game.
+	 * @param player
+	 *            An array with turns played by player one represented as true
+	 *            and turns played by player two represented as false.
+	 * @param actions
+	 *            An array of all the actions played during the selection
+	 *            portion of the game.
+	 * @param rewardSum
+	 *            The sum of the results for player one.
+	 * @param squaredSum
+	 *            The sum of the squares of the results.
+	 * @param count
+	 *            The number of results.
+	 */
+	public static void backup(MCNode[] nodes, boolean[] player, int[] actions, int rewardSum, int squaredSum,
+			int count) {
+		backup(nodes, player, actions, rewardSum, squaredSum, count, 0);
+	}
+
+	/**
+	 * Updates the nodes played in a game with the combined results of several
+	 * playouts, taking back the virtual loss given to each action during
+	 * selection.
+	 * 
+	 * @param nodes
+	 *            An array of all nodes traversed during the game.
+	 * @param player
+	 *            An array with turns played by player one represented as true
+	 *            and turns played by player two represented as false.
+	 * @param actions
+	 *            An array of all the actions played during the selection
+	 *            portion of the game.
+	 * @param rewardSum
+	 *            The sum of the results for player one.
+	 * @param squaredSum
+	 *            The sum of the squares of the results.
+	 * @param count
+	 *            The number of results.
+	 * @param virtualLoss
+	 *            The virtual loss given to each action, or 0.
+	 */
+	public static void backup(MCNode[] nodes, boolean[] player, int[] actions, int rewardSum, int squaredSum,
+			int count, int virtualLoss) {
 		for (int i = 0; i < nodes.length; i++) {
 			if (nodes[i] == null) {
 				break;
 			}
 
-			/* switch result if this was player two's move */
-			if (!player[i]) {
-				result = -result;
+			/* add the results, for the player who made this move */
+			nodes[i].addValue(actions[i], player[i] ? rewardSum : -rewardSum, squaredSum, count, virtualLoss);
+		}
+	}
+
+	/**
+	 * Passes the proofs of the nodes reached by a simulation up the tree (MCTS-Solver). The bounds of an action are
+	 * narrowed by the bounds of its successor, and the bounds of a node are the largest bounds of its actions. Proofs
+	 * are bounds on the net number of the remaining boxes rather than wins and losses, since a node can be reached
+	 * with different scores.
+	 * 
+	 * @param nodes
+	 *            An array of all nodes traversed during the game.
+	 * @param actions
+	 *            An array of all the actions played during the selection portion of the game.
+	 * @param completed
+	 *            The number of boxes completed by each action.
+	 * @param moves
+	 *            The number of selection moves made on the position (a move whose result was known without
+	 *            making it has no completed boxes).
+	 */
+	public static void backupProof(MCNode[] nodes, int[] actions, int[] completed, int moves) {
+		for (int i = moves - 1; i >= 0; i--) {
+			MCNode node = nodes[i];
+
+			if (node == null) {
+				continue;
+			}
+
+			MCNode child = node.getNode(actions[i], BEHAVIOR_EXPANSION_NEVER);
+
+			if (child == null) {
+				continue;
 			}
 
-			/* add a win, loss, or tie, to the node given the action taken */
-			nodes[i].addValue(actions[i], result, c);
+			/* the player who completes a box moves again */
+			boolean changed = completed[i] > 0
+					? node.setBounds(actions[i], completed[i] + child.lowerBound, completed[i] + child.upperBound)
+					: node.setBounds(actions[i], -child.upperBound, -child.lowerBound);
 
-			if (!player[i]) {
-				result = -result;
+			/* the nodes above can only change through a node which changed (the last node may have been proven
+			 * during the simulation) */
+			if (!changed && i < moves - 1) {
+				break;
 			}
 		}
 	}
 
 	/**
-	 * Plays the game from a given point off the tree with a random default
-	 * policy. This is the playout stage of simulation.
+	 * Gets the result for player one of a proven node or action.
 	 * 
-	 * @param state
-	 *            The starting state.
+	 * @param proof
+	 *            The proof for the player to move.
 	 * @param playerOne
-	 *            True if player one is to move, false otherwise.
-	 * @param p1Net
-	 *            The starting net score for player one.
-	 * @param terminalState
-	 *            The state at which simulation will cease.
+	 *            True if player one is to move.
+	 * @return An integer representing the result for player one (-1 for a loss, 0 for a tie, and 1 for a win).
+	 */
+	public static int getProvenResult(int proof, boolean playerOne) {
+		int result = proof == MCNode.PROVEN_WIN ? 1 : proof == MCNode.PROVEN_LOSS ? -1 : 0;
+
+		return playerOne ? result : -result;
+	}
+
+	/**
+	 * Updates the all-moves-as-first values of the nodes played in a game. For
+	 * each node, every action played later in the game by the player to move
+	 * at that node is updated as if it had been played first.
+	 * 
+	 * @param nodes
+	 *            An array of all nodes traversed during the game.
+	 * @param player
+	 *            An array with turns played by player one represented as true
+	 *            and turns played by player two represented as false. This
+	 *            includes the turns of the playout.
+	 * @param actions
+	 *            An array of all the actions played during the game, including
+	 *            the playout.
+	 * @param moves
+	 *            The number of moves in player and actions.
+	 * @param result
+	 *            An integer representing the result for player one (-1 for a
+	 *            loss, 0 for a tie, and 1 for a win).
+	 */
+	public void backupAmaf(MCNode[] nodes, boolean[] player, int[] actions, int moves, int result) {
+		/* playedAt[a] is the first move at which action a was played */
+		int[] playedAt = getContext(game).playedAt;
+
+		for (int i = 0; i < edges; i++) {
+			playedAt[i] = -1;
+		}
+
+		for (int i = moves - 1; i >= 0; i--) {
+			playedAt[actions[i]] = i;
+		}
+
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i] == null) {
+				break;
+			}
+
+			nodes[i].addAmafValues(playedAt, player, i, player[i] ? result : -result);
+		}
+	}
+
+	/**
+	 * Plays the game from a given point off the tree with the default policy
+	 * given by the playout behavior. This is the playout stage of simulation.
+	 * The game is played on the given position, so no memory is allocated.
+	 * This can be called by several threads at once, as long as each uses its
+	 * own position, random number generator, and arrays.
+	 *
+	 * @param playout
+	 *            The position from which the game is played. The score and
+	 *            player to move of the position are used.
+	 * @param random
+	 *            The random number generator used by the playout policy.
+	 * @param actions
+	 *            The array in which the actions of the playout are recorded.
+	 * @param turns
+	 *            The array in which the turns of the playout are recorded (true
+	 *            for player one).
+	 * @param moves
+	 *            The index in actions and turns of the first playout move.
 	 * @return An integer representing the result for player one (-1 for a loss,
 	 *         0 for a tie, and 1 for a win).
 	 */
-	public static int simulateDefault(GameState state, boolean playerOne, int p1Net, GameState terminalState) {
+	public int simulateDefault(Position playout, Random random, int[] actions, boolean[] turns, int moves) {
 
-		/* play until the terminalState */
+		boolean exact = behaviors[BEHAVIOR_INDEX_ENDGAME] == BEHAVIOR_ENDGAME_EXACT;
 
-		for (int i = 0; i < edges; i++) {
+		/* play until every edge is taken */
 
-			//get a random action
-			int action = randomPolicy(state);
-			state = game.getSimpleSuccessorState(state, action);
+		for (int i = moves; !playout.isTerminal(); i++) {
 
-			int taken = game.completedBoxesForEdge(action, state);
+			/* stop at a loony endgame which can be scored exactly */
+			if (exact && playout.isLoony()) {
+				int result = endgame(playout, playout.playerOne ? -playout.score : playout.score);
 
-			if (taken > 0) {
-				p1Net += playerOne ? taken : -taken;
+				if (result != ENDGAME_UNKNOWN) {
+					return playout.playerOne ? -result : result;
+				}
 			}
 
-			else {
-				playerOne = !playerOne;
-			}
+			//get an action from the default policy
+			int action = behaviors[BEHAVIOR_INDEX_PLAYOUT] == BEHAVIOR_PLAYOUT_HEURISTIC
+					? heuristicPolicy(playout, random) : randomPolicy(playout, random);
 
-			if (state.equals(terminalState)) {
-				break;
-			}
-		}
+			actions[i] = action;
+			turns[i] = playout.playerOne;
 
-		p1Net = p1Net > 0 ? 1 : p1Net < 0 ? -1 : 0;
+			playout.make(action);
+		}
 
-		return p1Net;
+		return playout.score > 0 ? 1 : playout.score < 0 ? -1 : 0;
 	}
 
 	/**
 	 * Runs a single simulation and updates the tree accordingly. The majority
 	 * of this method constitutes the selection stage of simulation.
-	 * 
+	 *
+	 * The moves are made on the position of the thread's simulation context,
+	 * which is returned to pastNode at the start of the next simulation.
+	 *
 	 * @param state
 	 *            The starting state.
 	 * @param p1Net
@@ -739,96 +1774,896 @@ public class MonteCarloTreeSearch {
 	 * @param game
 	 *            The game to be used. This game should belong to the player
 	 *            running the simulation.
-	 * @param board An array representing the number of edges taken for each box.
-	 * @param twoOrFour The number of boxes which have either 2 or 4 edges.
 	 */
-	public static void simulate(GameState state, int p1Net, MCNode pastNode, GameState terminalState, MCTree tree,
-			DotsAndBoxes game, int[] board, int twoOrFour) {
-		boolean playerOne = true;
+	public void simulate(GameState state, int p1Net, MCNode pastNode, GameState terminalState, MCTree tree,
+			DotsAndBoxes game) {
+
+		/* the scratch memory of this thread, with its position set to pastNode */
+		SimulationContext context = getContext(game);
+		Position position = context.begin(pastNode, p1Net);
+
+		boolean exact = behaviors[BEHAVIOR_INDEX_ENDGAME] == BEHAVIOR_ENDGAME_EXACT;
+		int z = ENDGAME_UNKNOWN; /* the result */
+
+		/* true if the game was decided before the end of the tree */
+		boolean decided = false;
 
 		int action = 0;
-		boolean[] turns = new boolean[edges];
-		int[] actionsTaken = new int[edges + 1];
+		boolean[] turns = context.turns;
+		int[] actionsTaken = context.actions;
 
 		/* keep track of the traversed nodes */
-		MCNode[] playedNodes = new MCNode[edges];
+		MCNode[] playedNodes = context.nodes;
 		MCNode currentNode = pastNode;
 
 		playedNodes[0] = currentNode;
 
-		/* plays each move until game over or off the tree */
-		for (int i = 0; !state.equals(terminalState); i++) {
+		/* the number of nodes created during this simulation */
+		int created = 0;
 
-			turns[i] = playerOne ? true : false;
+		/* the number of moves recorded in turns and actionsTaken */
+		int moves = 0;
 
-			/* make a move */
-			action = currentNode.getNextAction(c);
-			currentNode = currentNode.getNode(action, BEHAVIOR_EXPANSION_STANDARD);
+		/* the number of those moves made on the position, whose completed boxes are recorded */
+		int made = 0;
 
-			actionsTaken[i] = action;
+		/* plays each move until game over or off the tree */
+		for (int i = 0; !position.isTerminal(); i++) {
 
-			/* if someone has more than half the squares, quit early */
-			if (p1Net > (height * width) / 2 || p1Net < (-height * width) / 2) {
-				state = terminalState;
-				break;
+			turns[i] = position.playerOne;
+
+			/* a small enough position is solved exactly, once */
+			if (!currentNode.solved && position.freeCount <= solverEdges) {
+				context.getSolver().solve(position, currentNode);
 			}
 
-			int taken = 0;
-			
-			// increment the edges for each box which adjoins action
-			for(int b = 0; b < game.edgeBoxes[action].length; b++){
-				board[game.edgeBoxes[action][b]]++;
-				
-				if(board[game.edgeBoxes[action][b]] == 4){
-					taken++;
-					twoOrFour++;
-				} else if(board[game.edgeBoxes[action][b]] == 2){
-					twoOrFour++;
+			/* a proven node is never simulated again */
+			int moverScore = position.playerOne ? position.score : -position.score;
+			int proof = currentNode.getProof(moverScore);
+
+			if (proof != MCNode.PROVEN_NONE) {
+
+				/* the root's best action is known, so there is nothing to update */
+				if (i == 0) {
+					return;
 				}
+
+				z = getProvenResult(proof, position.playerOne);
+				playedNodes[i] = null;
+				break;
 			}
 
-			if (currentNode != null) {
-				state = currentNode.state;
+			/* stop at a loony endgame which can be scored exactly (below the root, so the root's actions are compared) */
+			if (exact && i > 0 && position.isLoony()) {
+				int result = endgame(position, position.playerOne ? -position.score : position.score);
+
+				if (result != ENDGAME_UNKNOWN) {
+					z = position.playerOne ? -result : result;
+					playedNodes[i] = null;
+					break;
+				}
 			}
 
-			else {
-				/* this casts a scored state to unscored, but since it just
-				 * feeds into simulateDefault, it doesn't matter
-				 */
-				state = game.getSuccessorState(state, action);
+			/* make a move (a proven win is always taken and a proven loss avoided) */
+			action = currentNode.getNextAction(c, moverScore);
+
+			actionsTaken[i] = action;
+			moves = i + 1;
+
+			/* other threads on the tree are steered away from this action until it is backed up */
+			if (context.virtualLoss > 0) {
+				currentNode.getLink(action).addVirtualLoss(context.virtualLoss);
+			}
+
+			/* the result of a proven action is known */
+			proof = currentNode.getLink(action).getProof(moverScore);
+
+			if (proof != MCNode.PROVEN_NONE) {
+				z = getProvenResult(proof, position.playerOne);
+				break;
+			}
+
+			MCNode parent = currentNode;
+
+			/* only the nodes created by this simulation count, not those of other threads on the tree */
+			if (currentNode.expand(action, getExpansionBehavior(created))) {
+				created++;
+			}
+
+			currentNode = currentNode.getNode(action, BEHAVIOR_EXPANSION_NEVER);
+
+			/* if someone has more than half the squares, quit early */
+			if (position.score > (height * width) / 2 || position.score < (-height * width) / 2) {
+				decided = true;
+				break;
+			}
+
+			int completed = position.make(action);
+			context.completed[i] = completed;
+			made = i + 1;
+
+			/* the last edge proves the action which takes it */
+			if (position.isTerminal()) {
+				parent.setProven(action, completed);
+			}
+
+			/* the state of the new node may be a transformation of the position */
+			if (currentNode != null && game.asymmetrical) {
+				position.load(currentNode.state, position.playerOne, position.score);
+				context.invalidate();
 			}
 
 			/* doesn't add the terminal node */
-			if (!state.equals(terminalState)) {
+			if (!position.isTerminal()) {
 				playedNodes[i + 1] = currentNode;
 			}
 
-			if (taken > 0) {
-				p1Net += playerOne ? taken : -taken;
+			if (currentNode == null) {
+				break;
+			}
+		}
+
+		/* proofs found by this simulation are passed up the tree */
+		backupProof(playedNodes, actionsTaken, context.completed, made);
+
+		/* several playouts from the leaf are backed up together */
+		if (z == ENDGAME_UNKNOWN && leafPlayouts > 1 && !decided && !position.isTerminal()) {
+			simulateLeaf(context, moves, pastNode.depth);
+			return;
+		}
+
+		/* a scored endgame needs no playout */
+		if (z == ENDGAME_UNKNOWN) {
+
+			/* playout if not at terminal state */
+			if (!decided && !position.isTerminal()) {
+				z = simulateDefault(position, getRandom(), actionsTaken, turns, moves);
+
+				/* the playout takes every edge it does not leave free */
+				moves = edges - pastNode.depth - position.freeCount;
 			}
 
 			else {
-				playerOne = !playerOne;
+				z = position.score > 0 ? 1 : position.score < 0 ? -1 : 0;
 			}
+		}
 
-			if (currentNode == null) {
+		/* backup the nodes */
+		backup(playedNodes, turns, actionsTaken, z, z * z, 1, context.virtualLoss);
+
+		/* actions are not comparable between nodes when symmetries are removed */
+		if (behaviors[BEHAVIOR_INDEX_VALUE] == BEHAVIOR_VALUE_RAVE && !game.asymmetrical) {
+			backupAmaf(playedNodes, turns, actionsTaken, moves, z);
+		}
+	}
+
+	/**
+	 * Makes leafPlayouts playouts from the leaf of a simulation and backs up their combined results. When
+	 * leafThreads is greater than 1, the playouts are made at the same time.
+	 *
+	 * @param context
+	 *            The simulation context holding the position of the leaf and the nodes, turns, and actions of
+	 *            the selection moves.
+	 * @param moves
+	 *            The number of selection moves.
+	 * @param depth
+	 *            The depth of the node at which the simulation started.
+	 */
+	public void simulateLeaf(SimulationContext context, int moves, int depth) {
+
+		if (context.leaves == null || context.leaves.length != leafPlayouts) {
+			context.leaves = new LeafPlayout[leafPlayouts];
+
+			for (int i = 0; i < leafPlayouts; i++) {
+				context.leaves[i] = new LeafPlayout(this, game, getRandom().nextLong());
+			}
+		}
+
+		LeafPlayout[] leaves = context.leaves;
+		MCNode[] nodes = context.nodes;
+		boolean[] turns = context.turns;
+		int[] actions = context.actions;
+
+		for (int i = 0; i < leafPlayouts; i++) {
+			leaves[i].reset(context.position, actions, turns, moves);
+		}
+
+		if (leafThreads > 1) {
+			runLeafPlayouts(leaves);
+		} else {
+			for (int i = 0; i < leafPlayouts; i++) {
+				leaves[i].call();
+			}
+		}
+
+		int rewardSum = 0;
+		int squaredSum = 0;
+
+		for (int i = 0; i < leafPlayouts; i++) {
+			rewardSum += leaves[i].result;
+			squaredSum += leaves[i].result * leaves[i].result;
+		}
+
+		backup(nodes, turns, actions, rewardSum, squaredSum, leafPlayouts, context.virtualLoss);
+
+		/* each playout has its own moves */
+		if (behaviors[BEHAVIOR_INDEX_VALUE] == BEHAVIOR_VALUE_RAVE && !game.asymmetrical) {
+			for (int i = 0; i < leafPlayouts; i++) {
+				LeafPlayout leaf = leaves[i];
+				backupAmaf(nodes, leaf.turns, leaf.actions, edges - depth - leaf.position.freeCount, leaf.result);
+			}
+		}
+	}
+
+	/**
+	 * Makes the leaf playouts on the leaf threads and waits for them to finish.
+	 * 
+	 * @param leaves
+	 *            The playouts to make.
+	 */
+	private void runLeafPlayouts(LeafPlayout[] leaves) {
+		/* the leaves of several searching threads can need the pool first at the same time */
+		synchronized (this) {
+			if (leafPool == null) {
+				leafPool = createPool(leafThreads, "leaf-playout");
+			}
+		}
+		
+		runTasks(leafPool, leaves);
+	}
+
+	/**
+	 * Gets the threads which search player one's trees while player two is to move, creating them the first time
+	 * they are needed.
+	 * 
+	 * @return The pool.
+	 */
+	private synchronized ExecutorService getPonderPool() {
+		if (ponderPool == null) {
+			ponderPool = createPool(Math.max(1, matchThreads), "ponder");
+		}
+		
+		return ponderPool;
+	}
+
+	/**
+	 * Gets the threads which search the trees of a root-parallel search, creating them the first time they are
+	 * needed. The matches played at the same time share the pool, which has threads for the trees of every match.
+	 * 
+	 * @param trees
+	 *            The number of trees of each search.
+	 * @return The pool.
+	 */
+	private synchronized ExecutorService getRootPool(int trees) {
+		if (rootPool == null) {
+			rootPool = createPool(trees * Math.max(1, matchThreads), "root-search");
+		}
+		
+		return rootPool;
+	}
+
+	/**
+	 * Gets the threads of a tree-parallel search, creating them the first time they are needed. The matches played
+	 * at the same time share the pool, which has treeThreads threads for every match.
+	 * 
+	 * @return The pool.
+	 */
+	private synchronized ExecutorService getTreePool() {
+		if (treePool == null) {
+			treePool = createPool(treeThreads * Math.max(1, matchThreads), "tree-search");
+		}
+		
+		return treePool;
+	}
+
+	/**
+	 * Makes the simulations of one move of a root-parallel search. Each tree is searched on its own thread, and
+	 * every shareInfoEvery simulations the statistics of the roots are summed and given back to every root, so the
+	 * action is chosen from the simulations of all the trees.
+	 * 
+	 * @param searches
+	 *            The trees of the search, whose nodes are at the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The number of simulations made on each tree.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param deadline
+	 *            The time (as given by System.nanoTime) at which the search stops, or Long.MAX_VALUE.
+	 * @return The number of simulations made by all the trees together.
+	 */
+	public int simulateParallel(RootSearch[] searches, int score, int simulations, GameState terminalState,
+			long deadline) {
+
+		MCNode root = searches[0].node;
+
+		/* the sums of the roots after the last exchange, which every root already holds */
+		int[] sharedCounts = new int[root.links.length];
+		int[] sharedRewards = new int[root.links.length];
+		long[] sharedSquared = new long[root.links.length];
+		long[] sharedAmaf = new long[root.links.length];
+
+		for (int i = 0; i < searches.length; i++) {
+			searches[i].score = score;
+			searches[i].terminalState = terminalState;
+			searches[i].deadline = deadline;
+		}
+
+		int made = 0;
+
+		while (simulations > 0 && root.getProof(score) == MCNode.PROVEN_NONE && System.nanoTime() < deadline) {
+			int run = shareInfoEvery > 0 ? Math.min(shareInfoEvery, simulations) : simulations;
+
+			for (int i = 0; i < searches.length; i++) {
+				searches[i].simulations = run;
+			}
+
+			made += runTasks(getRootPool(searches.length), searches);
+			shareRoots(searches, sharedCounts, sharedRewards, sharedSquared, sharedAmaf);
+
+			simulations -= run;
+		}
+
+		return made;
+	}
+
+	/**
+	 * Makes the simulations of one move on a single tree, stopping once the result of the node is proven. When
+	 * treeThreads is greater than 1, the simulations are made by a tree-parallel search.
+	 * 
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The number of simulations.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @return The number of simulations made.
+	 */
+	public int search(MCNode node, int score, int simulations, GameState terminalState, MCTree tree,
+			DotsAndBoxes game) {
+		return search(node, score, simulations, terminalState, tree, game, Long.MAX_VALUE, false);
+	}
+
+	/**
+	 * Makes the simulations of one move on a single tree, stopping once the result of the node is proven or the
+	 * deadline has passed. The time is checked every timeCheck simulations, so the search runs over the deadline
+	 * by less than timeCheck simulations. With earlyStop, the search also ends once the remaining simulations can
+	 * no longer change the action chosen, so simulations must be every simulation left to the move.
+	 * 
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The largest number of simulations.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @param deadline
+	 *            The time (as given by System.nanoTime) at which the search stops, or Long.MAX_VALUE.
+	 * @return The number of simulations made.
+	 */
+	public int search(MCNode node, int score, int simulations, GameState terminalState, MCTree tree,
+			DotsAndBoxes game, long deadline) {
+		return search(node, score, simulations, terminalState, tree, game, deadline, earlyStop);
+	}
+
+	/**
+	 * Makes the simulations of one move on a single tree.
+	 * 
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The largest number of simulations.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @param deadline
+	 *            The time (as given by System.nanoTime) at which the search stops, or Long.MAX_VALUE.
+	 * @param stopEarly
+	 *            True if the search ends once the remaining simulations can no longer change the action chosen.
+	 * @return The number of simulations made.
+	 */
+	private int search(MCNode node, int score, int simulations, GameState terminalState, MCTree tree,
+			DotsAndBoxes game, long deadline, boolean stopEarly) {
+		if (treeThreads > 1) {
+			return simulateTree(node, score, simulations, terminalState, tree, game, deadline);
+		}
+
+		int made = 0;
+
+		while (made < simulations && node.getProof(score) == MCNode.PROVEN_NONE) {
+			simulate(node.state, score, node, terminalState, tree, game);
+			made++;
+
+			/* the time and the statistics are checked only now and then */
+			if (made % timeCheck == 0 && (System.nanoTime() >= deadline
+					|| (stopEarly && isSettled(node, score, simulations - made)))) {
 				break;
 			}
 		}
 
-		int z; /* the result */
+		return made;
+	}
+
+	/**
+	 * Checks if the action chosen at a node (by getNextAction with c = 0) can no longer change during the remaining
+	 * simulations of a move. Each simulation adds at most leafPlayouts results to a single action, so the remaining
+	 * results can at worst lower the average of the chosen action and raise the average of another. The action is
+	 * settled if it keeps the larger average however these results are split between the two, or if every other
+	 * action is a proven loss.
+	 * 
+	 * Only the statistics are bounded. The AMAF values of RAVE change with every simulation, so a node valued with
+	 * RAVE is never settled, and neither is a node with a proven win, whose action depends on the bounds. A proof
+	 * found by a skipped simulation could still have changed the action.
+	 * 
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param remaining
+	 *            The number of simulations left to the move.
+	 * @return True if the action cannot change.
+	 */
+	boolean isSettled(MCNode node, int score, int remaining) {
+		if (behaviors[BEHAVIOR_INDEX_VALUE] == BEHAVIOR_VALUE_RAVE) {
+			return false;
+		}
+
+		MCNode.ActionLink[] links = node.links;
+		MCNode.ActionLink best = null;
+		long bestStats = 0;
+		double max = Double.NEGATIVE_INFINITY;
+		int open = 0;
+
+		/* the action with the largest average, which must be the only one (ties are broken at random) */
+		for (int i = 0; i < links.length; i++) {
+			int proof = links[i].getProof(score);
+
+			if (proof == MCNode.PROVEN_WIN) {
+				return false;
+			}
+
+			if (proof == MCNode.PROVEN_LOSS) {
+				continue;
+			}
+
+			open++;
+
+			long stats = links[i].stats;
+			int count = MCNode.getCount(stats);
+
+			if (count == 0) {
+				continue;
+			}
+
+			double mean = (double) MCNode.getRewardSum(stats) / count;
+
+			if (mean > max) {
+				max = mean;
+				best = links[i];
+				bestStats = stats;
+			} else if (mean == max) {
+				best = null;
+			}
+		}
+
+		/* the only action which is not a proven loss is always chosen */
+		if (open == 1) {
+			return true;
+		}
+
+		if (best == null) {
+			return false;
+		}
+
+		double results = (double) remaining * leafPlayouts;
+		double n = MCNode.getCount(bestStats);
+		double w = MCNode.getRewardSum(bestStats);
+
+		for (int i = 0; i < links.length; i++) {
+			if (links[i] == best || links[i].getProof(score) == MCNode.PROVEN_LOSS) {
+				continue;
+			}
+
+			long stats = links[i].stats;
+			int count = MCNode.getCount(stats);
+			double m = count + results;
+			double v = MCNode.getRewardSum(stats) + results;
+
+			/* x losses are given to the chosen action and the other results are wins of this one, which is never
+			 * chosen without results; the difference of the averages is convex in x, so only the integers next to
+			 * its minimum are checked */
+			double last = count == 0 ? results - 1 : results;
+
+			if (last < 0) {
+				continue;
+			}
+
+			double x = Math.min(last, Math.max(0, (w + m + v - n) / 4));
 
-		/* playout if not at terminal state */
-		if (!state.equals(terminalState)) {
-			z = simulateDefault(state, playerOne, p1Net, terminalState);
+			if (compare(w, n, v, m, Math.floor(x)) <= 0 || compare(w, n, v, m, Math.ceil(x)) <= 0) {
+				return false;
+			}
 		}
 
-		else {
-			z = p1Net > 0 ? 1 : p1Net < 0 ? -1 : 0;
+		return true;
+	}
+
+	/**
+	 * Compares the averages of two actions after x losses are given to the first and the other results are given
+	 * to the second as wins.
+	 * 
+	 * @param w
+	 *            The rewards of the first action.
+	 * @param n
+	 *            The times the first action was chosen.
+	 * @param v
+	 *            The rewards of the second action with every result added as a win.
+	 * @param m
+	 *            The times the second action was chosen with every result added.
+	 * @param x
+	 *            The number of losses given to the first action.
+	 * @return A value greater than 0 if the average of the first action is the larger.
+	 */
+	private static double compare(double w, double n, double v, double m, double x) {
+		return (w - x) * (m - x) - (v - x) * (n + x);
+	}
+
+
+	/**
+	 * Gets the time at which a move of player one must end. A move is given moveTime, and, in a timed game, its
+	 * share of the time left, which is divided evenly between player one's remaining moves (about half the free
+	 * edges).
+	 * 
+	 * @param start
+	 *            The time (as given by System.nanoTime) at which the move starts.
+	 * @param clock
+	 *            The time left for player one's moves in the game (in nanoseconds).
+	 * @param depth
+	 *            The number of edges taken.
+	 * @return The deadline of the move (as given by System.nanoTime), or Long.MAX_VALUE if the move is not timed.
+	 */
+	long getDeadline(long start, long clock, int depth) {
+		long budget = moveTime > 0 ? moveTime * 1000000 : Long.MAX_VALUE;
+
+		if (gameTime > 0) {
+			int moves = (edges - depth + 1) / 2;
+			budget = Math.min(budget, Math.max(0, clock) / Math.max(1, moves));
 		}
 
-		/* backup the nodes */
-		backup(playedNodes, turns, actionsTaken, z);
+		return budget == Long.MAX_VALUE ? Long.MAX_VALUE : start + budget;
+	}
+
+	/**
+	 * Sets the size of the board. The move times are cleared.
+	 * 
+	 * @param width
+	 *            The width (in boxes) of the board.
+	 * @param height
+	 *            The height (in boxes) of the board.
+	 */
+	public void setBoard(int width, int height) {
+		this.width = width;
+		this.height = height;
+		edges = (height * (width + 1)) + (width * (height + 1));
+		times = new long[edges][3];
+	}
+
+	/**
+	 * Creates a new tree of this search from the empty board, with the expansion threshold and growth of the
+	 * search.
+	 * 
+	 * @param game
+	 *            The game of the tree.
+	 * @return The tree.
+	 */
+	public MCTree newTree(DotsAndBoxes game) {
+		MCTree tree = new MCTree(this, game, game.scored ? new GameStateScored(0, 0) : new GameState(0));
+		tree.nodeCreationCount = expansionThreshold;
+		tree.nodeCreationGrowth = expansionGrowth;
+
+		return tree;
+	}
+
+	/**
+	 * Gets the scratch memory of the current thread for the given game, creating it if the thread has none or
+	 * the board size has changed.
+	 * 
+	 * @param game
+	 *            The game to be simulated.
+	 * @return The simulation context of the current thread.
+	 */
+	public SimulationContext getContext(DotsAndBoxes game) {
+		SimulationContext context = contexts.get();
+
+		/* games of the same size share the same board */
+		if (context == null || context.position.game.width != game.width
+				|| context.position.game.height != game.height) {
+			context = new SimulationContext(game);
+			contexts.set(context);
+		}
+
+		return context;
+	}
+
+	/**
+	 * Gets the state in which every edge of the board is taken.
+	 * 
+	 * @return The terminal state.
+	 */
+	public GameState getTerminalState() {
+		if (edges > 60) {
+			return new GameState(new BigInteger("2").pow(edges).subtract(new BigInteger("1")));
+		}
+
+		return new GameState((long) Math.pow(2, edges) - 1);
+	}
+
+	/**
+	 * Makes the simulations of one move of a tree-parallel search. The simulations are made by treeThreads threads
+	 * at the same time, all on the given tree.
+	 * 
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The number of simulations made by all the threads together.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @return The number of simulations made, fewer than simulations if the node was proven.
+	 */
+	public int simulateTree(MCNode node, int score, int simulations, GameState terminalState, MCTree tree,
+			DotsAndBoxes game) {
+		return simulateTree(node, score, simulations, terminalState, tree, game, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Makes the simulations of one move of a tree-parallel search, stopping once the deadline has passed. Each
+	 * thread checks the time every timeCheck simulations.
+	 * 
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The largest number of simulations made by all the threads together.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @param deadline
+	 *            The time (as given by System.nanoTime) at which the search stops, or Long.MAX_VALUE.
+	 * @return The number of simulations made.
+	 */
+	public int simulateTree(MCNode node, int score, int simulations, GameState terminalState, MCTree tree,
+			DotsAndBoxes game, long deadline) {
+		AtomicInteger remaining = new AtomicInteger(simulations);
+		TreeSearch[] searches = new TreeSearch[treeThreads];
+
+		for (int i = 0; i < searches.length; i++) {
+			searches[i] = new TreeSearch(tree, game, remaining);
+			searches[i].node = node;
+			searches[i].score = score;
+			searches[i].terminalState = terminalState;
+			searches[i].virtualLoss = virtualLoss;
+			searches[i].deadline = deadline;
+		}
+
+		return runTasks(getTreePool(), searches);
+	}
+
+	/**
+	 * Sums the statistics of the roots of a root-parallel search and gives the sums back to every root (all-reduce).
+	 * Only the statistics gained since the last exchange are added, since every root already holds the earlier sums.
+	 * The squared rewards (used by the variance of UCB1-Tuned) and the all-moves-as-first statistics (used by RAVE)
+	 * are summed with the counts they belong to, and the proof bounds of the actions are shared as well.
+	 * 
+	 * @param searches
+	 *            The trees of the search, whose nodes are at the same position.
+	 * @param sharedCounts
+	 *            The times each action was chosen after the last exchange. Updated with the new sums.
+	 * @param sharedRewards
+	 *            The rewards of each action after the last exchange. Updated with the new sums.
+	 * @param sharedSquared
+	 *            The squared rewards of each action after the last exchange. Updated with the new sums.
+	 * @param sharedAmaf
+	 *            The packed all-moves-as-first statistics of each action after the last exchange. Updated with the
+	 *            new sums.
+	 */
+	public static void shareRoots(RootSearch[] searches, int[] sharedCounts, int[] sharedRewards,
+			long[] sharedSquared, long[] sharedAmaf) {
+		int[] counts = sharedCounts.clone();
+		int[] rewards = sharedRewards.clone();
+		long[] squared = sharedSquared.clone();
+		long[] amaf = sharedAmaf.clone();
+
+		for (int i = 0; i < searches.length; i++) {
+			int[] timesChosen = searches[i].node.getTimesActionChosen();
+			int[] nodeRewards = searches[i].node.getRewards();
+			long[] nodeSquared = searches[i].node.getSquaredRewards();
+			long[] nodeAmaf = searches[i].node.getAmafStats();
+
+			for (int a = 0; a < counts.length; a++) {
+				counts[a] += timesChosen[a] - sharedCounts[a];
+				rewards[a] += nodeRewards[a] - sharedRewards[a];
+				squared[a] += nodeSquared[a] - sharedSquared[a];
+				
+				/* packed values are added by adding the longs */
+				amaf[a] += nodeAmaf[a] - sharedAmaf[a];
+			}
+		}
+
+		int total = 0;
+
+		for (int a = 0; a < counts.length; a++) {
+			total += counts[a];
+		}
+
+		for (int i = 0; i < searches.length; i++) {
+			MCNode node = searches[i].node;
+
+			node.setStats(counts, rewards);
+			node.setStats(squared, amaf);
+			node.timesReached = total + 1;
+		}
+
+		/* a bound found by any tree holds for every tree */
+		for (int a = 0; a < counts.length; a++) {
+			int lower = -MCNode.UNBOUNDED;
+			int upper = MCNode.UNBOUNDED;
+
+			for (int i = 0; i < searches.length; i++) {
+				lower = Math.max(lower, searches[i].node.links[a].lowerBound);
+				upper = Math.min(upper, searches[i].node.links[a].upperBound);
+			}
+
+			for (int i = 0; i < searches.length; i++) {
+				searches[i].node.setBounds(searches[i].node.links[a].action, lower, upper);
+			}
+		}
+
+		System.arraycopy(counts, 0, sharedCounts, 0, counts.length);
+		System.arraycopy(rewards, 0, sharedRewards, 0, rewards.length);
+		System.arraycopy(squared, 0, sharedSquared, 0, squared.length);
+		System.arraycopy(amaf, 0, sharedAmaf, 0, amaf.length);
+	}
+
+	/**
+	 * Creates a pool of daemon threads.
+	 * 
+	 * @param threads
+	 *            The number of threads.
+	 * @param name
+	 *            The name of the threads.
+	 * @return The pool.
+	 */
+	static ExecutorService createPool(int threads, final String name) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Runs tasks on a pool and waits for them to finish.
+	 * 
+	 * @param pool
+	 *            The pool which runs the tasks.
+	 * @param tasks
+	 *            The tasks to run.
+	 * @return The sum of the results of the tasks.
+	 */
+	static int runTasks(ExecutorService pool, Callable<Integer>[] tasks) {
+		ArrayList<Future<Integer>> results = new ArrayList<Future<Integer>>(tasks.length);
+		
+		for (int i = 0; i < tasks.length; i++) {
+			results.add(pool.submit(tasks[i]));
+		}
+		
+		int sum = 0;
+		
+		try {
+			for (int i = 0; i < results.size(); i++) {
+				sum += results.get(i).get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+		
+		return sum;
+	}
+
+	/**
+	 * Gets the expansion behavior for the next step of a simulation given the branch behavior of the search.
+	 * 
+	 * @param created
+	 *            The number of nodes already created during the simulation.
+	 * @return The expansion behavior to be passed to MCNode.getNode.
+	 */
+	public int getExpansionBehavior(int created) {
+		if (created == 0) {
+			return behaviors[BEHAVIOR_INDEX_EXPANSION];
+		}
+
+		switch (behaviors[BEHAVIOR_INDEX_BRANCH]) {
+		case BEHAVIOR_EXPANSION_FULL:
+			return BEHAVIOR_EXPANSION_ALWAYS;
+		case BEHAVIOR_EXPANSION_MULTIPLE:
+			return created < expansionNodes ? BEHAVIOR_EXPANSION_ALWAYS : BEHAVIOR_EXPANSION_NEVER;
+		default:
+			return BEHAVIOR_EXPANSION_NEVER;
+		}
+	}
+
+	/**
+	 * Gets the random number generator of the current thread.
+	 * 
+	 * @return The generator.
+	 */
+	public Random getRandom() {
+		return randoms.get();
+	}
+
+	/**
+	 * Seeds the random number generator of the current thread. The scratch memory of the thread's simulations is
+	 * cleared, since it holds generators seeded earlier.
+	 * 
+	 * @param seed
+	 *            The seed.
+	 */
+	public void setSeed(long seed) {
+		getRandom().setSeed(seed);
+		contexts.remove();
+	}
+
+	/**
+	 * Gets the array in which the current thread records the times of player one's moves.
+	 * 
+	 * @return The array of the thread, or times if it has none.
+	 */
+	long[][] getMoveTimes() {
+		long[][] buffer = moveTimes.get();
+
+		return buffer == null ? times : buffer;
+	}
+
+	/**
+	 * Gives the current thread its own array in which to record the times of player one's moves.
+	 * 
+	 * @param buffer
+	 *            The array, of the same size as times.
+	 */
+	void setMoveTimes(long[][] buffer) {
+		moveTimes.set(buffer);
 	}
 
 	/**
@@ -838,14 +2673,41 @@ public class MonteCarloTreeSearch {
 	 *            The state from which to select an action.
 	 * @return An integer representing the action selected.
 	 */
-	public static int randomPolicy(GameState state) {
+	public int randomPolicy(GameState state) {
 		int[] actions = DotsAndBoxes.getAllActions(state, edges);
 
-		int next = r.nextInt(actions.length);
+		int next = getRandom().nextInt(actions.length);
 
 		return actions[next];
 	}
 
+	/**
+	 * Gets a random action from a given position.
+	 * 
+	 * @param position
+	 *            The position from which to select an action.
+	 * @param random
+	 *            The random number generator to use.
+	 * @return An integer representing the action selected.
+	 */
+	public static int randomPolicy(Position position, Random random) {
+		return position.randomEdge(random);
+	}
+
+	/**
+	 * Gets an action from a given position which takes a capture, a safe edge,
+	 * or (if neither exists) a random edge.
+	 * 
+	 * @param position
+	 *            The position from which to select an action.
+	 * @param random
+	 *            The random number generator to use.
+	 * @return An integer representing the action selected.
+	 */
+	public static int heuristicPolicy(Position position, Random random) {
+		return position.heuristicEdge(random);
+	}
+
 	/**
 	 * Plays a single game using the tree developed for player one.
 	 * 
@@ -854,7 +2716,7 @@ public class MonteCarloTreeSearch {
 	 *            False if both players should make moves from the same tree.
 	 * @return True if player one wins the game, false otherwise.
 	 */
-	public static boolean testPolicy(boolean random) {
+	public boolean testPolicy(boolean random) {
 		int p1Net = 0;
 		GameState state = new GameState(0);
 		int action = 0;
@@ -0,0 +1,168 @@
+package MCTS;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Searches a player's tree while the opponent is to move (pondering). The
+ * simulations are made from the current node until the opponent's move is
+ * known, and the successor of that move keeps every simulation made through
+ * it when it becomes the current node.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class Ponder implements Callable<Integer> {
+
+	/**
+	 * The search of the tree.
+	 */
+	MonteCarloTreeSearch search;
+
+	/**
+	 * The tree to be searched.
+	 */
+	MCTree tree;
+
+	/**
+	 * The game of the tree.
+	 */
+	DotsAndBoxes game;
+
+	/**
+	 * The state at which simulation will cease.
+	 */
+	GameState terminalState;
+
+	/**
+	 * The node from which the simulations are made, at which the opponent is
+	 * to move.
+	 */
+	MCNode node;
+
+	/**
+	 * The net score of the opponent.
+	 */
+	int score;
+
+	/**
+	 * True once the opponent's move is known.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * The result of the pondering, or null if the tree is not being searched.
+	 */
+	private Future<Integer> result;
+
+	/**
+	 * The times each action of node had been chosen when the pondering
+	 * started.
+	 */
+	private int[] before;
+
+	/**
+	 * Constructor for the Ponder.
+	 *
+	 * @param search
+	 *            The search of the tree.
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 */
+	public Ponder(MonteCarloTreeSearch search, MCTree tree, DotsAndBoxes game, GameState terminalState) {
+		this.search = search;
+		this.tree = tree;
+		this.game = game;
+		this.terminalState = terminalState;
+	}
+
+	/**
+	 * Starts searching the tree on a thread of the pool. Nothing else may
+	 * change the tree until stop is called.
+	 *
+	 * @param pool
+	 *            The pool which runs the search.
+	 * @param node
+	 *            The node of the current position, at which the opponent is to
+	 *            move.
+	 * @param score
+	 *            The net score of the opponent.
+	 */
+	public void start(ExecutorService pool, MCNode node, int score) {
+		this.node = node;
+		this.score = score;
+		this.before = node.getTimesActionChosen();
+
+		stopped = false;
+		result = pool.submit(this);
+	}
+
+	/**
+	 * Stops searching the tree and waits for the last simulation to finish.
+	 *
+	 * @return The number of simulations made since start.
+	 */
+	public int stop() {
+		if (result == null) {
+			return 0;
+		}
+
+		stopped = true;
+
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			result = null;
+		}
+	}
+
+	/**
+	 * Gets the number of simulations of the last pondering which were made
+	 * through a successor of the node, and are kept when it becomes the
+	 * current node.
+	 *
+	 * @param child
+	 *            The successor reached by the opponent's move.
+	 * @return The number of simulations, or 0 if child is not a successor of
+	 *         the node.
+	 */
+	public int getKept(MCNode child) {
+		for (int i = 0; i < node.links.length; i++) {
+			if (node.links[i].child == child) {
+				return node.links[i].getTimesChosen() - before[i];
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Makes simulations from the node until stop is called or its result is
+	 * proven.
+	 *
+	 * @return The number of simulations made.
+	 */
+	public Integer call() {
+		int made = 0;
+
+		while (!stopped && node.getProof(score) == MCNode.PROVEN_NONE) {
+			search.simulate(node.state, score, node, terminalState, tree, game);
+			made++;
+		}
+
+		return made;
+	}
+}
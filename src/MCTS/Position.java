@@ -0,0 +1,614 @@
+package MCTS;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * A mutable Dots and Boxes position used to play games without creating new states.
+ *
+ * The taken edges are kept as a bitboard, the free edges as an array from which an edge is removed by
+ * swapping it with the last free edge, and the number of taken edges of each box as a counter. After
+ * construction, no method of this class allocates memory.
+ *
+ * The free edges which complete a box (captures) and the free edges which give a box its third side
+ * (unsafe edges) are kept as bitmasks, updated with each edge taken.
+ *
+ * Edges are taken with make and returned with unmake, in reverse order. Each updates the
+ * bitboard, box counts, hash, score, and player to move in constant time.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class Position {
+
+	/**
+	 * The game whose board this position represents.
+	 */
+	public DotsAndBoxes game;
+
+	/**
+	 * The number of edges on the board.
+	 */
+	public int edges;
+
+	/**
+	 * The taken edges. Bit (e % 64) of word (e / 64) is set if edge e is taken.
+	 */
+	public long[] taken;
+
+	/**
+	 * The number of taken edges for each box.
+	 */
+	public int[] boxCounts;
+
+	/**
+	 * The free edges. Only the first freeCount positions are used.
+	 */
+	public int[] free;
+
+	/**
+	 * The index in free of each free edge.
+	 */
+	private int[] freeIndex;
+
+	/**
+	 * The number of free edges.
+	 */
+	public int freeCount;
+
+	/**
+	 * The number of boxes with exactly two or four taken edges. When every box
+	 * has two or four edges, no edge can be taken without giving away boxes.
+	 */
+	public int twoOrFour;
+
+	/**
+	 * The Zobrist hash of the taken edges.
+	 */
+	public long hash;
+
+	/**
+	 * The net score for player one.
+	 */
+	public int score;
+
+	/**
+	 * True if player one is to move, false otherwise.
+	 */
+	public boolean playerOne;
+
+	/**
+	 * The edges taken, in the order they were taken.
+	 */
+	private int[] history;
+
+	/**
+	 * The number of boxes completed by each edge in history.
+	 */
+	private int[] completedHistory;
+
+	/**
+	 * The number of edges in history.
+	 */
+	public int moves;
+
+	/**
+	 * The chains and loops of this position.
+	 */
+	public ChainStructure chains;
+
+	/**
+	 * Every edge on the board, as a bitmask.
+	 */
+	private long[] all;
+
+	/**
+	 * The free edges which complete a box.
+	 */
+	public long[] captures;
+
+	/**
+	 * The free edges which give a box its third side.
+	 */
+	public long[] unsafe;
+
+	/**
+	 * The edges found by the last call to findCaptures or findSafeEdges.
+	 */
+	public long[] candidates;
+
+	/**
+	 * Constructor for the Position. The position starts with no edges taken.
+	 *
+	 * @param game
+	 *            The game whose board this position represents.
+	 */
+	public Position(DotsAndBoxes game) {
+		this.game = game;
+		this.edges = game.edges;
+
+		taken = new long[(edges + 63) / 64];
+		all = new long[taken.length];
+		captures = new long[taken.length];
+		unsafe = new long[taken.length];
+		candidates = new long[taken.length];
+		boxCounts = new int[game.boxEdges.length];
+		free = new int[edges];
+		freeIndex = new int[edges];
+		history = new int[edges];
+		completedHistory = new int[edges];
+
+		for (int i = 0; i < edges; i++) {
+			all[i >>> 6] |= 1L << i;
+		}
+
+		chains = new ChainStructure(this);
+
+		clear();
+	}
+
+	/**
+	 * Removes every edge from the board.
+	 */
+	public void clear() {
+		for (int i = 0; i < taken.length; i++) {
+			taken[i] = 0;
+			captures[i] = 0;
+			unsafe[i] = 0;
+		}
+
+		for (int i = 0; i < boxCounts.length; i++) {
+			boxCounts[i] = 0;
+		}
+
+		twoOrFour = 0;
+		hash = 0;
+		score = 0;
+		playerOne = true;
+		moves = 0;
+
+		if (chains != null) {
+			chains.clear();
+		}
+
+		for (int i = 0; i < edges; i++) {
+			free[i] = i;
+			freeIndex[i] = i;
+		}
+
+		freeCount = edges;
+	}
+
+	/**
+	 * Sets this position to the given state, with the given player to move and
+	 * score.
+	 *
+	 * @param state
+	 *            The state to load.
+	 * @param playerOne
+	 *            True if player one is to move, false otherwise.
+	 * @param score
+	 *            The net score for player one.
+	 */
+	public void load(GameState state, boolean playerOne, int score) {
+		load(state);
+
+		this.playerOne = playerOne;
+		this.score = score;
+	}
+
+	/**
+	 * Sets this position to a copy of another position of the same game.
+	 *
+	 * @param position
+	 *            The position to copy.
+	 */
+	public void copy(Position position) {
+		System.arraycopy(position.taken, 0, taken, 0, taken.length);
+		System.arraycopy(position.captures, 0, captures, 0, captures.length);
+		System.arraycopy(position.unsafe, 0, unsafe, 0, unsafe.length);
+		System.arraycopy(position.boxCounts, 0, boxCounts, 0, boxCounts.length);
+		System.arraycopy(position.free, 0, free, 0, edges);
+		System.arraycopy(position.freeIndex, 0, freeIndex, 0, edges);
+		System.arraycopy(position.history, 0, history, 0, position.moves);
+		System.arraycopy(position.completedHistory, 0, completedHistory, 0, position.moves);
+
+		freeCount = position.freeCount;
+		twoOrFour = position.twoOrFour;
+		hash = position.hash;
+		score = position.score;
+		playerOne = position.playerOne;
+		moves = position.moves;
+
+		chains.copy(position.chains);
+	}
+
+	/**
+	 * Sets this position to the given state, with player one to move and no
+	 * score.
+	 *
+	 * @param state
+	 *            The state to load.
+	 */
+	public void load(GameState state) {
+		clear();
+
+		BigInteger big = state.bigState;
+		long small = state.longState;
+
+		for (int i = 0; i < edges; i++) {
+			int bit = edges - i - 1;
+
+			if (big != null ? big.testBit(bit) : ((small >>> bit) & 1) == 1) {
+				make(i);
+			}
+		}
+
+		/* the order in which the edges were loaded does not matter */
+		score = 0;
+		playerOne = true;
+	}
+
+	/**
+	 * Checks whether an edge is taken.
+	 *
+	 * @param edge
+	 *            The edge to check.
+	 * @return True if the edge is taken, false otherwise.
+	 */
+	public boolean isTaken(int edge) {
+		return (taken[edge >>> 6] & (1L << edge)) != 0;
+	}
+
+	/**
+	 * Takes an edge for the player to move. The completed boxes are scored for
+	 * that player, and the turn passes if no box is completed.
+	 *
+	 * @param edge
+	 *            The edge to take. Must be free.
+	 * @return The number of boxes completed by the edge.
+	 */
+	public int make(int edge) {
+		taken[edge >>> 6] |= 1L << edge;
+		hash ^= game.zobristKeys[edge];
+
+		/* swap the edge with the last free edge */
+		int index = freeIndex[edge];
+		int last = free[freeCount - 1];
+		free[index] = last;
+		freeIndex[last] = index;
+		freeCount--;
+
+		captures[edge >>> 6] &= ~(1L << edge);
+		unsafe[edge >>> 6] &= ~(1L << edge);
+
+		int completed = 0;
+		int[] boxes = game.edgeBoxes[edge];
+
+		for (int i = 0; i < boxes.length; i++) {
+			int count = ++boxCounts[boxes[i]];
+
+			if (count == 4) {
+				completed++;
+				twoOrFour++;
+			} else if (count == 2) {
+				twoOrFour++;
+			} else if (count == 3) {
+				twoOrFour--;
+			}
+		}
+
+		updateBoxes(boxes);
+		chains.make(edge, moves);
+
+		history[moves] = edge;
+		completedHistory[moves] = completed;
+		moves++;
+
+		if (completed > 0) {
+			score += playerOne ? completed : -completed;
+		} else {
+			playerOne = !playerOne;
+		}
+
+		return completed;
+	}
+
+	/**
+	 * Returns the last edge taken, restoring the position before it was taken.
+	 *
+	 * @return The edge returned.
+	 */
+	public int unmake() {
+		moves--;
+		int edge = history[moves];
+		int completed = completedHistory[moves];
+
+		if (completed > 0) {
+			score -= playerOne ? completed : -completed;
+		} else {
+			playerOne = !playerOne;
+		}
+
+		taken[edge >>> 6] &= ~(1L << edge);
+		hash ^= game.zobristKeys[edge];
+
+		/* the edge becomes the last free edge */
+		free[freeCount] = edge;
+		freeIndex[edge] = freeCount;
+		freeCount++;
+
+		int[] boxes = game.edgeBoxes[edge];
+
+		for (int i = 0; i < boxes.length; i++) {
+			int count = boxCounts[boxes[i]]--;
+
+			if (count == 4) {
+				twoOrFour--;
+			} else if (count == 3) {
+				twoOrFour++;
+			} else if (count == 2) {
+				twoOrFour--;
+			}
+		}
+
+		updateBoxes(boxes);
+		chains.unmake(moves);
+
+		return edge;
+	}
+
+	/**
+	 * Returns edges until the given number of edges remain taken.
+	 *
+	 * @param moves
+	 *            The number of edges to keep.
+	 */
+	public void unmakeTo(int moves) {
+		while (this.moves > moves) {
+			unmake();
+		}
+	}
+
+	/**
+	 * Updates the capture and unsafe bitmasks for the free edges of the given
+	 * boxes.
+	 *
+	 * @param boxes
+	 *            The boxes whose edge counts have changed.
+	 */
+	private void updateBoxes(int[] boxes) {
+		for (int i = 0; i < boxes.length; i++) {
+			int[] boxEdges = game.boxEdges[boxes[i]];
+
+			for (int b = 0; b < boxEdges.length; b++) {
+				if (!isTaken(boxEdges[b])) {
+					updateEdge(boxEdges[b]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Updates the capture and unsafe bitmasks for a free edge.
+	 *
+	 * @param edge
+	 *            The free edge to update.
+	 */
+	private void updateEdge(int edge) {
+		long bit = 1L << edge;
+		int word = edge >>> 6;
+		int[] boxes = game.edgeBoxes[edge];
+
+		captures[word] &= ~bit;
+		unsafe[word] &= ~bit;
+
+		for (int i = 0; i < boxes.length; i++) {
+			int count = boxCounts[boxes[i]];
+
+			if (count == 3) {
+				captures[word] |= bit;
+			} else if (count == 2) {
+				unsafe[word] |= bit;
+			}
+		}
+	}
+
+	/**
+	 * Fills candidates with the safe edges (free edges which neither complete a
+	 * box nor give a box its third side).
+	 *
+	 * @return The number of safe edges.
+	 */
+	public int findSafeEdges() {
+		int count = 0;
+
+		for (int i = 0; i < taken.length; i++) {
+			candidates[i] = all[i] & ~taken[i] & ~captures[i] & ~unsafe[i];
+			count += Long.bitCount(candidates[i]);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Fills candidates with the free edges which complete a box.
+	 *
+	 * @return The number of captures.
+	 */
+	public int findCaptures() {
+		int count = 0;
+
+		for (int i = 0; i < taken.length; i++) {
+			candidates[i] = captures[i];
+			count += Long.bitCount(candidates[i]);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Checks whether this position is a loony endgame: edges remain, but
+	 * every box has two or four edges, so every move gives away boxes.
+	 *
+	 * @return True if this position is a loony endgame, false otherwise.
+	 */
+	public boolean isLoony() {
+		return freeCount > 0 && twoOrFour == boxCounts.length;
+	}
+
+	/**
+	 * Creates a state representing this position. Unlike the other methods of
+	 * this class, this allocates memory.
+	 *
+	 * @return The state of the board.
+	 */
+	public GameState getState() {
+		if (edges > 60) {
+			BigInteger state = BigInteger.ZERO;
+
+			for (int i = 0; i < edges; i++) {
+				if (isTaken(i)) {
+					state = state.setBit(edges - i - 1);
+				}
+			}
+
+			return new GameState(state);
+		}
+
+		long state = 0;
+
+		for (int i = 0; i < edges; i++) {
+			if (isTaken(i)) {
+				state |= 1L << (edges - i - 1);
+			}
+		}
+
+		return new GameState(state);
+	}
+
+	/**
+	 * Checks whether every edge is taken.
+	 *
+	 * @return True if the game is over, false otherwise.
+	 */
+	public boolean isTerminal() {
+		return freeCount == 0;
+	}
+
+	/**
+	 * Gets a random free edge.
+	 *
+	 * @param r
+	 *            The random number generator to use.
+	 * @return The edge selected.
+	 */
+	public int randomEdge(Random r) {
+		return free[r.nextInt(freeCount)];
+	}
+
+	/**
+	 * Gets a free edge using a simple strategy. A random capture is taken if
+	 * there is one. Otherwise a random safe edge is taken if there is one.
+	 * Otherwise a random edge of the shortest chain or loop is sacrificed.
+	 *
+	 * @param r
+	 *            The random number generator to use.
+	 * @return The edge selected.
+	 */
+	public int heuristicEdge(Random r) {
+		int count = findCaptures();
+
+		if (count == 0) {
+			count = findSafeEdges();
+		}
+
+		if (count == 0) {
+			return sacrificeEdge(r);
+		}
+
+		return selectCandidate(r.nextInt(count));
+	}
+
+	/**
+	 * Gets a random free edge among those which give away the fewest boxes.
+	 * Every free edge is assumed to touch a box with two edges.
+	 *
+	 * @param r
+	 *            The random number generator to use.
+	 * @return The edge selected.
+	 */
+	public int sacrificeEdge(Random r) {
+		int best = Integer.MAX_VALUE;
+		int count = 0;
+
+		for (int i = 0; i < freeCount; i++) {
+			int length = getSacrificeLength(free[i]);
+
+			if (length < best) {
+				best = length;
+				count = 1;
+			} else if (length == best) {
+				count++;
+			}
+		}
+
+		int n = r.nextInt(count);
+
+		for (int i = 0; i < freeCount; i++) {
+			if (getSacrificeLength(free[i]) == best && n-- == 0) {
+				return free[i];
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the length of the chain or loop given away by taking a free edge.
+	 *
+	 * @param edge
+	 *            The free edge.
+	 * @return The length of the component of the boxes of the edge.
+	 */
+	private int getSacrificeLength(int edge) {
+		int[] boxes = game.edgeBoxes[edge];
+		int length = 0;
+
+		for (int i = 0; i < boxes.length; i++) {
+			length = Math.max(length, chains.getLength(boxes[i]));
+		}
+
+		return length;
+	}
+
+	/**
+	 * Finds the nth edge in candidates.
+	 *
+	 * @param n
+	 *            The index of the edge among the candidates.
+	 * @return The edge found.
+	 */
+	private int selectCandidate(int n) {
+		for (int i = 0; i < candidates.length; i++) {
+			long word = candidates[i];
+			int count = Long.bitCount(word);
+
+			if (n >= count) {
+				n -= count;
+				continue;
+			}
+
+			/* clear the lowest bits until the nth is lowest */
+			for (; n > 0; n--) {
+				word &= word - 1;
+			}
+
+			return (i << 6) + Long.numberOfTrailingZeros(word);
+		}
+
+		return -1;
+	}
+}
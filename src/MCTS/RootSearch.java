@@ -0,0 +1,88 @@
+package MCTS;
+
+import java.util.concurrent.Callable;
+
+/**
+ * One of the trees of a root-parallel search. Each task searches its own tree
+ * from the same position, so tasks can run at the same time on different
+ * threads without sharing any node. The statistics of the roots are combined
+ * between runs.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class RootSearch implements Callable<Integer> {
+
+	/**
+	 * The tree searched by this task.
+	 */
+	MCTree tree;
+
+	/**
+	 * The game of the tree.
+	 */
+	DotsAndBoxes game;
+
+	/**
+	 * The state at which simulations end.
+	 */
+	GameState terminalState;
+
+	/**
+	 * The node of the tree at the current position.
+	 */
+	MCNode node;
+
+	/**
+	 * The net score of the player to move at node.
+	 */
+	int score;
+
+	/**
+	 * The number of simulations made by the next run.
+	 */
+	int simulations;
+
+	/**
+	 * The time (as given by System.nanoTime) at which the search stops, or
+	 * Long.MAX_VALUE.
+	 */
+	long deadline = Long.MAX_VALUE;
+
+	/**
+	 * Constructor for the RootSearch.
+	 *
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 */
+	public RootSearch(MCTree tree, DotsAndBoxes game) {
+		this.tree = tree;
+		this.game = game;
+		this.node = tree.root;
+	}
+
+	/**
+	 * Makes the simulations of one run, stopping early if the result of the
+	 * node is proven or the deadline has passed.
+	 *
+	 * @return The number of simulations made.
+	 */
+	public Integer call() {
+		int made = 0;
+
+		while (made < simulations && node.getProof(score) == MCNode.PROVEN_NONE) {
+			tree.search.simulate(node.state, score, node, terminalState, tree, game);
+			made++;
+
+			if (made % tree.search.timeCheck == 0 && System.nanoTime() >= deadline) {
+				break;
+			}
+		}
+
+		return made;
+	}
+}
@@ -0,0 +1,271 @@
+package MCTS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * The coordinator of a distributed search (rank 0 of the MPI version). Worker
+ * processes connect to the coordinator over TCP, and each searches its own
+ * tree from the coordinator's position with the coordinator's settings.
+ *
+ * The simulations of a move are made in rounds of shareInfoEvery simulations
+ * on every process. After each round, the workers send the changes of the top
+ * levels of their trees, the coordinator adds them to its own tree, and sends
+ * the summed changes back to every worker, so every tree holds the simulations
+ * of every process. The action is chosen from the coordinator's tree, and
+ * every worker follows it.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ * @see SearchWorker
+ */
+
+public class SearchCoordinator {
+
+	/**
+	 * The search of the coordinator.
+	 */
+	private MonteCarloTreeSearch search;
+
+	/**
+	 * The connections to the workers.
+	 */
+	private Socket[] sockets;
+
+	/**
+	 * The streams from the workers.
+	 */
+	private DataInputStream[] ins;
+
+	/**
+	 * The streams to the workers.
+	 */
+	private DataOutputStream[] outs;
+
+	/**
+	 * The statistics shared by the coordinator's tree.
+	 */
+	private TreeExchange exchange;
+
+	/**
+	 * Constructor for the SearchCoordinator. Waits until every worker has
+	 * connected.
+	 *
+	 * @param search
+	 *            The search of the coordinator, whose settings the workers
+	 *            are given.
+	 * @param port
+	 *            The port on which the workers connect.
+	 * @param workers
+	 *            The number of workers.
+	 * @param depth
+	 *            The number of levels of the trees shared.
+	 */
+	public SearchCoordinator(MonteCarloTreeSearch search, int port, int workers, int depth) {
+		this.search = search;
+		sockets = new Socket[workers];
+		ins = new DataInputStream[workers];
+		outs = new DataOutputStream[workers];
+		exchange = new TreeExchange(depth);
+
+		try {
+			ServerSocket server = new ServerSocket(port);
+
+			try {
+				for (int i = 0; i < workers; i++) {
+					sockets[i] = server.accept();
+					sockets[i].setTcpNoDelay(true);
+					ins[i] = new DataInputStream(new BufferedInputStream(sockets[i].getInputStream()));
+					outs[i] = new DataOutputStream(new BufferedOutputStream(sockets[i].getOutputStream()));
+				}
+			} finally {
+				server.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gives every worker the board and the settings of the search.
+	 *
+	 * @param width
+	 *            The width (in boxes) of the board.
+	 * @param height
+	 *            The height (in boxes) of the board.
+	 * @param scored
+	 *            True if the states of the tree are scored.
+	 * @param sym
+	 *            True if the tree removes symmetries.
+	 * @param c
+	 *            The uncertainty constant.
+	 * @param searchArgs
+	 *            The parameters of the search, as given to
+	 *            MonteCarloTreeSearch.
+	 */
+	public void configure(int width, int height, boolean scored, boolean sym, double c, List<String> searchArgs) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			out.writeInt(width);
+			out.writeInt(height);
+			out.writeBoolean(scored);
+			out.writeBoolean(sym);
+			out.writeDouble(c);
+			out.writeInt(exchange.depth);
+			out.writeInt(searchArgs.size());
+
+			for (String arg : searchArgs) {
+				out.writeUTF(arg);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+
+		sendAll(TreeExchange.CONFIG, bytes.toByteArray());
+	}
+
+	/**
+	 * Starts a new game. The coordinator shares the given tree, and every
+	 * worker starts a new tree.
+	 *
+	 * @param tree
+	 *            The coordinator's tree.
+	 */
+	public void newGame(MCTree tree) {
+		exchange.reset(tree);
+		sendAll(TreeExchange.NEW_GAME, new byte[0]);
+	}
+
+	/**
+	 * Moves every tree to the next position of the game.
+	 *
+	 * @param from
+	 *            The node of the coordinator's tree before the move.
+	 * @param to
+	 *            The node of the coordinator's tree after the move, which must
+	 *            be a successor of from.
+	 */
+	public void follow(MCNode from, MCNode to) {
+		int action = -1;
+
+		for (int i = 0; i < from.links.length; i++) {
+			if (from.links[i].child == to) {
+				action = from.links[i].action;
+				break;
+			}
+		}
+
+		if (action == -1) {
+			throw new IllegalStateException("The node is not a successor of the current node");
+		}
+
+		exchange.node = to;
+		sendAll(TreeExchange.FOLLOW, new byte[] { (byte) (action >> 8), (byte) action });
+	}
+
+	/**
+	 * Makes the simulations of one move on the coordinator and every worker,
+	 * sharing the statistics every shareInfoEvery simulations. The simulations
+	 * are divided between the processes.
+	 *
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param simulations
+	 *            The number of simulations made by all the processes
+	 *            together.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param tree
+	 *            The coordinator's tree.
+	 * @param game
+	 *            The game of the tree.
+	 * @return The number of simulations made by the coordinator and every
+	 *         worker.
+	 */
+	public int simulate(MCNode node, int score, int simulations, GameState terminalState, MCTree tree,
+			DotsAndBoxes game) {
+		int each = Math.max(1, simulations / (sockets.length + 1));
+		int every = search.shareInfoEvery;
+		int made = 0;
+
+		while (each > 0 && node.getProof(score) == MCNode.PROVEN_NONE) {
+			int run = every > 0 ? Math.min(every, each) : each;
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+
+			try {
+				out.writeInt(score);
+				out.writeInt(run);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+
+			/* the workers search while the coordinator does */
+			sendAll(TreeExchange.SEARCH, bytes.toByteArray());
+			made += search.search(node, score, run, terminalState, tree, game);
+
+			try {
+				for (int i = 0; i < ins.length; i++) {
+					DataInputStream stats = TreeExchange.receive(ins[i], TreeExchange.STATS);
+
+					made += stats.readInt();
+					exchange.apply(stats, false);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+
+			sendAll(TreeExchange.SHARE, exchange.collect());
+
+			each -= run;
+		}
+
+		return made;
+	}
+
+	/**
+	 * Ends the search of every worker and closes the connections.
+	 */
+	public void close() {
+		sendAll(TreeExchange.QUIT, new byte[0]);
+
+		for (int i = 0; i < sockets.length; i++) {
+			try {
+				sockets[i].close();
+			} catch (IOException e) {
+				/* the worker has already closed the connection */
+			}
+		}
+	}
+
+	/**
+	 * Sends a message to every worker.
+	 *
+	 * @param type
+	 *            The type of the message.
+	 * @param payload
+	 *            The body of the message.
+	 */
+	private void sendAll(int type, byte[] payload) {
+		try {
+			for (int i = 0; i < outs.length; i++) {
+				TreeExchange.send(outs[i], type, payload);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
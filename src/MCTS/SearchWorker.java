@@ -0,0 +1,189 @@
+package MCTS;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+
+/**
+ * A worker of a distributed search. The worker connects to the coordinator,
+ * takes its board and settings, and then searches its own tree whenever it is
+ * asked, sending the changes of its statistics back to the coordinator.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ * @see SearchCoordinator
+ */
+
+public class SearchWorker {
+
+	/**
+	 * @param args
+	 *            coordinator (host:port, localhost:7050 if not given)
+	 *
+	 *            Optional: any setting of the search (such as treeThreads),
+	 *            which replaces the coordinator's setting on this worker
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		MonteCarloTreeSearch search = new MonteCarloTreeSearch();
+		String host = "localhost";
+		int port = search.port;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].startsWith("coordinator=")) {
+				String address = args[i].substring(args[i].indexOf("=") + 1);
+				int colon = address.lastIndexOf(":");
+
+				host = colon < 0 ? address : address.substring(0, colon);
+				port = colon < 0 ? port : Integer.parseInt(address.substring(colon + 1));
+			}
+		}
+
+		Socket socket = connect(host, port);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		TreeExchange exchange = new TreeExchange(search.shareDepth);
+		DotsAndBoxes game = null;
+		MCTree tree = null;
+		GameState terminalState = null;
+
+		while (true) {
+			DataInputStream message = TreeExchange.receive(in);
+
+			switch (message.readByte()) {
+			case TreeExchange.CONFIG:
+				game = configure(search, message, args);
+				terminalState = search.getTerminalState();
+				exchange.depth = search.shareDepth;
+				break;
+
+			case TreeExchange.NEW_GAME:
+				tree = search.newTree(game);
+				exchange.reset(tree);
+				break;
+
+			case TreeExchange.FOLLOW:
+				if (exchange.follow(message.readShort()) == null) {
+					throw new IllegalStateException("The action is not possible from the current node");
+				}
+				break;
+
+			case TreeExchange.SEARCH:
+				int score = message.readInt();
+				int simulations = message.readInt();
+
+				int made = search.search(exchange.node, score, simulations, terminalState, tree, game);
+				byte[] batch = exchange.collect();
+				ByteArrayOutputStream stats = new ByteArrayOutputStream(batch.length + 4);
+
+				new DataOutputStream(stats).writeInt(made);
+				stats.write(batch);
+				TreeExchange.send(out, TreeExchange.STATS, stats.toByteArray());
+				break;
+
+			case TreeExchange.SHARE:
+				exchange.apply(message, true);
+				break;
+
+			case TreeExchange.QUIT:
+				socket.close();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Connects to the coordinator, waiting until it is listening.
+	 *
+	 * @param host
+	 *            The host of the coordinator.
+	 * @param port
+	 *            The port of the coordinator.
+	 * @return The connection.
+	 * @throws IOException
+	 *             If the coordinator cannot be reached.
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting.
+	 */
+	private static Socket connect(String host, int port) throws IOException, InterruptedException {
+		for (int attempt = 0;; attempt++) {
+			try {
+				Socket socket = new Socket(host, port);
+				socket.setTcpNoDelay(true);
+
+				return socket;
+			} catch (ConnectException e) {
+				if (attempt >= 60) {
+					throw e;
+				}
+
+				Thread.sleep(1000);
+			}
+		}
+	}
+
+	/**
+	 * Sets the board and the settings of the search given by the coordinator,
+	 * then the settings given to this worker.
+	 *
+	 * @param search
+	 *            The search of the worker.
+	 * @param message
+	 *            The body of the CONFIG message.
+	 * @param args
+	 *            The arguments of this worker.
+	 * @return The game of the worker's trees.
+	 * @throws IOException
+	 *             If the message cannot be read.
+	 */
+	private static DotsAndBoxes configure(MonteCarloTreeSearch search, DataInputStream message, String[] args)
+			throws IOException {
+		int width = message.readInt();
+		int height = message.readInt();
+		boolean scored = message.readBoolean();
+		boolean sym = message.readBoolean();
+
+		search.setBoard(width, height);
+		search.c = message.readDouble();
+		search.shareDepth = message.readInt();
+
+		boolean[] params = new boolean[43];
+		int count = message.readInt();
+
+		for (int i = 0; i < count; i++) {
+			setParameter(search, message.readUTF(), params);
+		}
+
+		for (int i = 0; i < args.length; i++) {
+			setParameter(search, args[i], params);
+		}
+
+		search.game = new DotsAndBoxes(height, width, scored, sym);
+
+		return search.game;
+	}
+
+	/**
+	 * Sets a setting of the search given as name=value.
+	 *
+	 * @param search
+	 *            The search of the worker.
+	 * @param arg
+	 *            The parameter.
+	 * @param params
+	 *            The parameters given so far.
+	 */
+	private static void setParameter(MonteCarloTreeSearch search, String arg, boolean[] params) {
+		int index = arg.indexOf("=") + 1;
+
+		if (index > 0) {
+			search.setSearchParameter(arg.substring(0, index - 1), arg.substring(index), params);
+		}
+	}
+}
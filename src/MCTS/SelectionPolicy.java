@@ -0,0 +1,32 @@
+package MCTS;
+
+/**
+ * A policy used to select actions during the search. Given the average reward of an explored action, the
+ * policy gives the value which is maximized by MCNode.getNextAction. Rewards range from -1 to 1.
+ * <p>
+ * Implementations must not allocate memory, since they are called for every link of every node traversed.
+ * 
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public interface SelectionPolicy {
+
+	/**
+	 * Gets the selection value of an explored action.
+	 * 
+	 * @param mean
+	 *            The average reward of the action (possibly blended with its
+	 *            all-moves-as-first value).
+	 * @param link
+	 *            The link of the action. The link has been chosen at least
+	 *            once.
+	 * @param timesReached
+	 *            The number of times the parent node was reached.
+	 * @param c
+	 *            The uncertainty constant.
+	 * @return The value of the action.
+	 */
+	public double getValue(double mean, MCNode.ActionLink link, int timesReached, double c);
+}
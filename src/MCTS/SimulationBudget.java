@@ -0,0 +1,153 @@
+package MCTS;
+
+/**
+ * Divides player one's simulations between its moves in one game. Each move
+ * adds a fixed number of simulations (the share) to the budget, and spends
+ * half of the share before looking at the root. The rest of the move is made
+ * only if the root is uncertain, that is when the two most visited actions
+ * hold most of the visits and the second is close to the first. The
+ * simulations a move does not spend are kept by the budget for later moves.
+ * A move can spend at most twice the share, and never more than the budget
+ * holds, so a game never takes more than the share for each move.
+ *
+ * In the opening, the visits are spread over many actions which are about as
+ * good as each other, so the choice matters little and the moves are cheap.
+ * The simulations saved are spent in the middlegame, where a few actions are
+ * contested.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class SimulationBudget {
+
+	/**
+	 * The part of the share spent before the root is looked at.
+	 */
+	public static final double FIRST_PART = 0.5;
+
+	/**
+	 * The most simulations spent by a move, as a multiple of the share.
+	 */
+	public static final double MOST = 2;
+
+	/**
+	 * The uncertainty for which a move spends the whole share. Most roots are
+	 * below it in the opening and above it in the middlegame.
+	 */
+	public static final double USUAL_UNCERTAINTY = 0.2;
+
+	/**
+	 * The search whose trees are searched.
+	 */
+	private MonteCarloTreeSearch search;
+
+	/**
+	 * The simulations added to the budget by each move.
+	 */
+	private int share;
+
+	/**
+	 * The simulations the budget holds.
+	 */
+	private long remaining;
+
+	/**
+	 * Constructor for the SimulationBudget.
+	 *
+	 * @param search
+	 *            The search whose trees are searched.
+	 * @param share
+	 *            The simulations added to the budget by each move.
+	 */
+	public SimulationBudget(MonteCarloTreeSearch search, int share) {
+		this.search = search;
+		this.share = share;
+	}
+
+	/**
+	 * Gets the simulations the budget holds.
+	 *
+	 * @return The simulations the budget holds.
+	 */
+	public long getRemaining() {
+		return remaining;
+	}
+
+	/**
+	 * Makes the simulations of one move, taking them from the budget.
+	 *
+	 * @param node
+	 *            The node of the current position.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @param terminalState
+	 *            The state at which simulation will cease.
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @return The number of simulations made.
+	 */
+	public int search(MCNode node, int score, GameState terminalState, MCTree tree, DotsAndBoxes game) {
+		remaining += share;
+
+		/* a single action needs no search */
+		if (node.links.length == 1) {
+			return 0;
+		}
+
+		int made = search.search(node, score, (int) Math.min(remaining, Math.round(share * FIRST_PART)),
+				terminalState, tree, game);
+
+		long more = Math.round(share * (1 - FIRST_PART) * getUncertainty(node, score) / USUAL_UNCERTAINTY);
+		more = Math.min(more, Math.round(share * (MOST - FIRST_PART)));
+		more = Math.min(more, remaining - made);
+
+		if (more > 0) {
+			made += search.search(node, score, (int) more, terminalState, tree, game);
+		}
+
+		remaining -= made;
+
+		return made;
+	}
+
+	/**
+	 * Gets how uncertain the choice of action at a node is: the visits of the
+	 * second most visited action as a part of the visits of the most visited,
+	 * times the part of all visits held by the two.
+	 *
+	 * @param node
+	 *            The node.
+	 * @param score
+	 *            The net score of the player to move.
+	 * @return The uncertainty, from 0 (the choice is settled) to 1.
+	 */
+	public static double getUncertainty(MCNode node, int score) {
+		if (node.getProof(score) != MCNode.PROVEN_NONE) {
+			return 0;
+		}
+
+		int first = 0, second = 0, total = 0;
+
+		for (int i = 0; i < node.links.length; i++) {
+			int count = node.links[i].getTimesChosen();
+			total += count;
+
+			if (count > first) {
+				second = first;
+				first = count;
+			} else if (count > second) {
+				second = count;
+			}
+		}
+
+		if (first == 0) {
+			return 0;
+		}
+
+		return ((double) second / first) * ((double) (first + second) / total);
+	}
+}
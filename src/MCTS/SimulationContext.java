@@ -0,0 +1,151 @@
+package MCTS;
+
+/**
+ * The scratch memory used by the simulations of one thread. A simulation
+ * resets the parts it uses instead of allocating new arrays, so running a
+ * simulation creates no garbage. Each search keeps a context for every thread.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class SimulationContext {
+
+	/**
+	 * The number of edges on the board.
+	 */
+	public int edges;
+
+	/**
+	 * The turns of the current simulation (true for player one).
+	 */
+	public boolean[] turns;
+
+	/**
+	 * The actions of the current simulation.
+	 */
+	public int[] actions;
+
+	/**
+	 * The number of boxes completed by each action of the current simulation.
+	 */
+	public int[] completed;
+
+	/**
+	 * The nodes traversed during the current simulation. Positions after the
+	 * last node are null.
+	 */
+	public MCNode[] nodes;
+
+	/**
+	 * The first move at which each action was played, used by backupAmaf.
+	 */
+	public int[] playedAt;
+
+	/**
+	 * The position on which the moves of a simulation are made.
+	 */
+	public Position position;
+
+	/**
+	 * The node at which the last simulation started, or null if the position
+	 * must be loaded again.
+	 */
+	private MCNode root;
+
+	/**
+	 * The net score for player one at root.
+	 */
+	private int rootScore;
+
+	/**
+	 * The number of moves of the position at root.
+	 */
+	private int rootMoves;
+
+	/**
+	 * The playouts made from each leaf when several are made.
+	 */
+	public LeafPlayout[] leaves;
+
+	/**
+	 * The virtual loss given to each action selected by the simulations of
+	 * this thread, or 0 if the thread is the only one searching its tree.
+	 */
+	public int virtualLoss;
+
+	/**
+	 * The endgame solver of this thread, or null if it has not been needed.
+	 */
+	private EndgameSolver solver;
+
+	/**
+	 * Constructor for the SimulationContext.
+	 *
+	 * @param game
+	 *            The game to be simulated.
+	 */
+	public SimulationContext(DotsAndBoxes game) {
+		edges = game.edges;
+		turns = new boolean[edges];
+		actions = new int[edges + 1];
+		completed = new int[edges];
+		nodes = new MCNode[edges];
+		playedAt = new int[edges];
+		position = new Position(game);
+	}
+
+	/**
+	 * Prepares the context for a new simulation. The position is returned to
+	 * the given node by taking back the moves of the last simulation, or is
+	 * loaded from the state of the node if the simulation starts elsewhere or
+	 * loading takes fewer moves.
+	 *
+	 * @param root
+	 *            The node at which the simulation starts. Player one is to
+	 *            move at this node.
+	 * @param score
+	 *            The net score for player one at the node.
+	 * @return The position of the node.
+	 */
+	public Position begin(MCNode root, int score) {
+		/* taking back a move costs about as much as loading one */
+		if (this.root == root && rootScore == score && position.moves - rootMoves <= rootMoves) {
+			position.unmakeTo(rootMoves);
+		} else {
+			position.load(root.state, true, score);
+			this.root = root;
+			rootScore = score;
+			rootMoves = position.moves;
+		}
+
+		for (int i = 0; i < nodes.length && nodes[i] != null; i++) {
+			nodes[i] = null;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Gets the endgame solver of this thread, creating it the first time it is
+	 * needed. The solver keeps its transposition table between simulations.
+	 *
+	 * @return The endgame solver.
+	 */
+	public EndgameSolver getSolver() {
+		if (solver == null) {
+			solver = new EndgameSolver(position.game);
+		}
+
+		return solver;
+	}
+
+	/**
+	 * Marks the position as no longer reachable from the last root by taking
+	 * back moves, so the next simulation loads it again.
+	 */
+	public void invalidate() {
+		root = null;
+	}
+}
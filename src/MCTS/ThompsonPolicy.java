@@ -0,0 +1,78 @@
+package MCTS;
+
+import java.util.Random;
+
+/**
+ * The Beta-Bernoulli Thompson sampling selection policy. Rewards are mapped from [-1, 1] to [0, 1] (a draw is
+ * half a win), and the value of an action is a sample from Beta(1 + wins, 1 + losses). The uncertainty constant
+ * is not used.
+ * 
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class ThompsonPolicy implements SelectionPolicy {
+
+	/**
+	 * The search whose random number generators are used to sample.
+	 */
+	private MonteCarloTreeSearch search;
+
+	/**
+	 * Constructor for the ThompsonPolicy.
+	 * 
+	 * @param search
+	 *            The search whose random number generators are used to sample.
+	 */
+	public ThompsonPolicy(MonteCarloTreeSearch search) {
+		this.search = search;
+	}
+
+	/**
+	 * Gets a sample of the mean reward of the action, mapped back to [-1, 1].
+	 * 
+	 * @see MCTS.SelectionPolicy#getValue(double, MCTS.MCNode.ActionLink, int, double)
+	 */
+	public double getValue(double mean, MCNode.ActionLink link, int timesReached, double c) {
+		double n = link.getSelectionCount();
+		double wins = n * (mean + 1) / 2;
+		double losses = n - wins;
+
+		Random random = search.getRandom();
+		double x = sampleGamma(1 + wins, random);
+		double y = sampleGamma(1 + losses, random);
+
+		return (2 * (x / (x + y))) - 1;
+	}
+
+	/**
+	 * Samples a gamma distribution with scale 1 using the method of Marsaglia and Tsang.
+	 * 
+	 * @param shape
+	 *            The shape of the distribution. Must be at least 1.
+	 * @param r
+	 *            The random number generator to use.
+	 * @return The sample.
+	 */
+	public static double sampleGamma(double shape, Random r) {
+		double d = shape - (1.0 / 3);
+		double c = 1 / Math.sqrt(9 * d);
+
+		while (true) {
+			double x = r.nextGaussian();
+			double v = 1 + c * x;
+
+			if (v <= 0) {
+				continue;
+			}
+
+			v = v * v * v;
+			double u = r.nextDouble();
+
+			if (u < 1 - 0.0331 * x * x * x * x || Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) {
+				return d * v;
+			}
+		}
+	}
+}
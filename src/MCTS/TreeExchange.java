@@ -0,0 +1,432 @@
+package MCTS;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+
+/**
+ * The statistics shared by one process of a distributed search, and the
+ * messages by which they are sent.
+ *
+ * Every message is framed as its length (an int) followed by that many bytes,
+ * the first of which is the type of the message.
+ *
+ * The processes share the top shareDepth levels of their trees below the
+ * current node. A batch of statistics is a list of nodes, each given by the
+ * actions from the current node and followed by the changes of its links since
+ * the last exchange (times chosen, rewards, squared rewards, and the
+ * all-moves-as-first times chosen and rewards used by RAVE) and the proof
+ * bounds of its links. Since every process searches with the same settings, a
+ * list of actions reaches the same state in every tree.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class TreeExchange {
+
+	/**
+	 * The message giving a worker the board and the settings of the search.
+	 */
+	public static final int CONFIG = 1;
+
+	/**
+	 * The message starting a new tree.
+	 */
+	public static final int NEW_GAME = 2;
+
+	/**
+	 * The message moving the current node to the successor of an action.
+	 */
+	public static final int FOLLOW = 3;
+
+	/**
+	 * The message asking a worker to make a number of simulations.
+	 */
+	public static final int SEARCH = 4;
+
+	/**
+	 * The message with the number of simulations a worker made (an int),
+	 * followed by the changes of its statistics.
+	 */
+	public static final int STATS = 5;
+
+	/**
+	 * The message with the summed changes of every process.
+	 */
+	public static final int SHARE = 6;
+
+	/**
+	 * The message ending the search.
+	 */
+	public static final int QUIT = 7;
+
+	/**
+	 * The tree of this process.
+	 */
+	MCTree tree;
+
+	/**
+	 * The node of the tree at the current position.
+	 */
+	MCNode node;
+
+	/**
+	 * The number of levels of the tree shared.
+	 */
+	int depth;
+
+	/**
+	 * The statistics of each link of the shared nodes after the last
+	 * exchange, three per link (stats, squared rewards, and all-moves-as-first
+	 * stats).
+	 */
+	private IdentityHashMap<MCNode, long[]> shared = new IdentityHashMap<MCNode, long[]>();
+
+	/**
+	 * The changes sent by the last call to collect, in the same form.
+	 */
+	private IdentityHashMap<MCNode, long[]> sent = new IdentityHashMap<MCNode, long[]>();
+
+	/**
+	 * The actions from the current node to the node being collected.
+	 */
+	private int[] path;
+
+	/**
+	 * Constructor for the TreeExchange.
+	 *
+	 * @param depth
+	 *            The number of levels of the tree shared.
+	 */
+	public TreeExchange(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Starts sharing a new tree from its root.
+	 *
+	 * @param tree
+	 *            The tree.
+	 */
+	public void reset(MCTree tree) {
+		this.tree = tree;
+		this.node = tree.root;
+		shared.clear();
+		sent.clear();
+	}
+
+	/**
+	 * Moves the current node to the successor of an action.
+	 *
+	 * @param action
+	 *            The action made.
+	 * @return The new current node, or null if the action is not possible.
+	 */
+	public MCNode follow(int action) {
+		node = node.getNode(action, MonteCarloTreeSearch.BEHAVIOR_EXPANSION_ALWAYS);
+
+		return node;
+	}
+
+	/**
+	 * Writes the changes of the shared nodes since the last exchange. The
+	 * changes are counted as shared, and are kept until the next call to
+	 * apply.
+	 *
+	 * @return The batch of changes.
+	 */
+	public byte[] collect() {
+		sent.clear();
+
+		if (path == null || path.length < depth) {
+			path = new int[Math.max(1, depth)];
+		}
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+
+			collect(out, node, 0, new IdentityHashMap<MCNode, Boolean>());
+			out.writeShort(-1);
+
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes the changes of a node and the shared nodes below it.
+	 *
+	 * @param out
+	 *            The stream to write to.
+	 * @param current
+	 *            The node.
+	 * @param level
+	 *            The number of actions from the current node to the node.
+	 * @param visited
+	 *            The nodes already written, since a node can be reached by
+	 *            several paths.
+	 * @throws IOException
+	 *             If the stream cannot be written.
+	 */
+	private void collect(DataOutputStream out, MCNode current, int level, IdentityHashMap<MCNode, Boolean> visited)
+			throws IOException {
+		if (level >= depth || visited.put(current, Boolean.TRUE) != null) {
+			return;
+		}
+
+		MCNode.ActionLink[] links = current.links;
+		long[] before = getShared(current);
+		long[] change = new long[before.length];
+		int changed = 0;
+
+		for (int i = 0; i < links.length; i++) {
+			long stats = links[i].stats;
+			long squared = links[i].squaredRewards;
+			long amaf = links[i].amafStats;
+
+			change[3 * i] = stats - before[3 * i];
+			change[3 * i + 1] = squared - before[3 * i + 1];
+			change[3 * i + 2] = amaf - before[3 * i + 2];
+			before[3 * i] = stats;
+			before[3 * i + 1] = squared;
+			before[3 * i + 2] = amaf;
+
+			if (isChanged(links[i], change, i)) {
+				changed++;
+			}
+		}
+
+		if (changed > 0) {
+			sent.put(current, change);
+
+			out.writeShort(level);
+
+			for (int i = 0; i < level; i++) {
+				out.writeShort(path[i]);
+			}
+
+			out.writeShort(changed);
+
+			for (int i = 0; i < links.length; i++) {
+				if (isChanged(links[i], change, i)) {
+					out.writeShort(links[i].action);
+					out.writeInt(MCNode.getCount(change[3 * i]));
+					out.writeInt(MCNode.getRewardSum(change[3 * i]));
+					out.writeInt((int) change[3 * i + 1]);
+					out.writeInt(MCNode.getCount(change[3 * i + 2]));
+					out.writeInt(MCNode.getRewardSum(change[3 * i + 2]));
+					out.writeShort(links[i].lowerBound);
+					out.writeShort(links[i].upperBound);
+				}
+			}
+		}
+
+		for (int i = 0; i < links.length; i++) {
+			MCNode child = links[i].child;
+
+			if (child != null) {
+				path[level] = links[i].action;
+				collect(out, child, level + 1, visited);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a link has anything to share.
+	 *
+	 * @param link
+	 *            The link.
+	 * @param change
+	 *            The changes of the links of its node.
+	 * @param i
+	 *            The index of the link.
+	 * @return True if the statistics of the link changed or it has a bound.
+	 */
+	private static boolean isChanged(MCNode.ActionLink link, long[] change, int i) {
+		return change[3 * i] != 0 || change[3 * i + 1] != 0 || change[3 * i + 2] != 0
+				|| link.lowerBound > -MCNode.UNBOUNDED
+				|| link.upperBound < MCNode.UNBOUNDED;
+	}
+
+	/**
+	 * Adds a batch of changes to the tree, creating the nodes it names. The
+	 * bounds of the batch narrow the bounds of the tree.
+	 *
+	 * @param batch
+	 *            The batch, as written by collect.
+	 * @param summed
+	 *            True if the batch is the sum of the changes of every
+	 *            process, which includes the changes sent by this process.
+	 *            These are taken out of the batch, and the changes made are
+	 *            counted as shared. False if the batch is the changes of
+	 *            another process, which are shared at the next exchange.
+	 */
+	public void apply(DataInputStream batch, boolean summed) {
+		try {
+			for (int level = batch.readShort(); level >= 0; level = batch.readShort()) {
+				MCNode current = node;
+
+				for (int i = 0; i < level; i++) {
+					int action = batch.readShort();
+
+					if (current != null) {
+						current = current.getNode(action, MonteCarloTreeSearch.BEHAVIOR_EXPANSION_ALWAYS);
+					}
+				}
+
+				long[] own = summed && current != null ? sent.get(current) : null;
+				long[] before = summed && current != null ? getShared(current) : null;
+				int links = batch.readShort();
+
+				for (int l = 0; l < links; l++) {
+					int action = batch.readShort();
+					int count = batch.readInt();
+					int rewards = batch.readInt();
+					int squared = batch.readInt();
+					int amafCount = batch.readInt();
+					int amafRewards = batch.readInt();
+					int lower = batch.readShort();
+					int upper = batch.readShort();
+
+					if (current == null) {
+						continue;
+					}
+
+					int i = getIndex(current, action);
+
+					if (i < 0) {
+						continue;
+					}
+
+					if (own != null) {
+						count -= MCNode.getCount(own[3 * i]);
+						rewards -= MCNode.getRewardSum(own[3 * i]);
+						squared -= (int) own[3 * i + 1];
+						amafCount -= MCNode.getCount(own[3 * i + 2]);
+						amafRewards -= MCNode.getRewardSum(own[3 * i + 2]);
+					}
+
+					if (count != 0 || rewards != 0 || squared != 0) {
+						current.addValue(action, rewards, squared, count);
+					}
+
+					if (amafCount != 0 || amafRewards != 0) {
+						current.links[i].updateAmaf(amafRewards, amafCount);
+					}
+
+					if (before != null) {
+						before[3 * i] += MCNode.pack(count, rewards);
+						before[3 * i + 1] += squared;
+						before[3 * i + 2] += MCNode.pack(amafCount, amafRewards);
+					}
+
+					current.setBounds(action, lower, upper);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the statistics of the links of a node after the last exchange.
+	 * A node which has not been shared had no statistics.
+	 *
+	 * @param node
+	 *            The node.
+	 * @return The statistics, three per link.
+	 */
+	private long[] getShared(MCNode node) {
+		long[] before = shared.get(node);
+
+		if (before == null) {
+			before = new long[3 * node.links.length];
+			shared.put(node, before);
+		}
+
+		return before;
+	}
+
+	/**
+	 * Gets the index of the link of an action.
+	 *
+	 * @param node
+	 *            The node.
+	 * @param action
+	 *            The action.
+	 * @return The index, or -1 if the node has no link for the action.
+	 */
+	private static int getIndex(MCNode node, int action) {
+		for (int i = 0; i < node.links.length; i++) {
+			if (node.links[i].action == action) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Sends a message.
+	 *
+	 * @param out
+	 *            The stream of the connection.
+	 * @param type
+	 *            The type of the message.
+	 * @param payload
+	 *            The body of the message.
+	 * @throws IOException
+	 *             If the message cannot be sent.
+	 */
+	public static void send(DataOutputStream out, int type, byte[] payload) throws IOException {
+		out.writeInt(payload.length + 1);
+		out.writeByte(type);
+		out.write(payload);
+		out.flush();
+	}
+
+	/**
+	 * Receives a message.
+	 *
+	 * @param in
+	 *            The stream of the connection.
+	 * @return The message, whose first byte is its type.
+	 * @throws IOException
+	 *             If the message cannot be received.
+	 */
+	public static DataInputStream receive(DataInputStream in) throws IOException {
+		byte[] message = new byte[in.readInt()];
+		in.readFully(message);
+
+		return new DataInputStream(new ByteArrayInputStream(message));
+	}
+
+	/**
+	 * Receives a message of a given type.
+	 *
+	 * @param in
+	 *            The stream of the connection.
+	 * @param type
+	 *            The type expected.
+	 * @return The body of the message.
+	 * @throws IOException
+	 *             If the message cannot be received or is of another type.
+	 */
+	public static DataInputStream receive(DataInputStream in, int type) throws IOException {
+		DataInputStream message = receive(in);
+		int received = message.readByte();
+
+		if (received != type) {
+			throw new IOException("Expected message " + type + ", received " + received);
+		}
+
+		return message;
+	}
+}
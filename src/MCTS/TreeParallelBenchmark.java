@@ -0,0 +1,119 @@
+package MCTS;
+
+/**
+ * Measures how the speed of a tree-parallel search grows with its threads.
+ * For each number of threads from 1 to the maximum, a new tree is searched
+ * from the empty board, and the simulations per second are printed with the
+ * speedup over one thread.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class TreeParallelBenchmark {
+
+	/**
+	 * @param args
+	 *            width, height, c, sims (per run), threads (the largest
+	 *            number of threads), virtualLoss, runs (the runs averaged for
+	 *            each number of threads, after one warm-up run)
+	 */
+	public static void main(String[] args) {
+		MonteCarloTreeSearch search = new MonteCarloTreeSearch();
+		int width = 4, height = 4, sims = 20000, threads = Runtime.getRuntime().availableProcessors(), runs = 3;
+		double c = 2;
+
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			int index = arg.indexOf("=") + 1;
+			String value = arg.substring(index);
+
+			switch (arg.substring(0, index - 1)) {
+			case "width":
+				width = Integer.parseInt(value);
+				break;
+			case "height":
+				height = Integer.parseInt(value);
+				break;
+			case "c":
+				c = Double.parseDouble(value);
+				break;
+			case "sims":
+				sims = Integer.parseInt(value);
+				break;
+			case "threads":
+				threads = Integer.parseInt(value);
+				break;
+			case "virtualLoss":
+				search.virtualLoss = Integer.parseInt(value);
+				break;
+			case "runs":
+				runs = Integer.parseInt(value);
+				break;
+			default:
+				System.out.println("Invalid Parameter: " + arg);
+				return;
+			}
+		}
+
+		search.setBoard(width, height);
+		search.c = c;
+		search.game = new DotsAndBoxes(height, width, false, false);
+
+		System.out.println(height + "x" + width + " c=" + c + " sims=" + sims + " virtualLoss="
+				+ search.virtualLoss + " processors=" + Runtime.getRuntime().availableProcessors());
+
+		/* the compiler is warmed up before the first timing */
+		for (int r = 0; r < runs; r++) {
+			search(search, sims);
+		}
+
+		double base = 0;
+
+		for (int t = 1; t <= threads; t++) {
+			search.treeThreads = t;
+
+			if (search.treePool != null) {
+				search.treePool.shutdown();
+				search.treePool = null;
+			}
+
+			/* the first run with each number of threads is not counted */
+			search(search, sims);
+
+			long time = 0;
+			long made = 0;
+
+			for (int r = 0; r < runs; r++) {
+				long start = System.nanoTime();
+				made += search(search, sims);
+				time += System.nanoTime() - start;
+			}
+
+			double rate = made * 1e9 / time;
+
+			if (t == 1) {
+				base = rate;
+			}
+
+			System.out.printf("threads=%d sims/s=%.0f speedup=%.2f%n", t, rate, rate / base);
+		}
+	}
+
+	/**
+	 * Searches a new tree from the empty board.
+	 *
+	 * @param search
+	 *            The search.
+	 * @param sims
+	 *            The number of simulations.
+	 * @return The number of simulations made, fewer than sims if the root
+	 *         was proven.
+	 */
+	private static int search(MonteCarloTreeSearch search, int sims) {
+		MCTree tree = search.newTree(search.game);
+
+		return search.simulateTree(tree.root, 0, sims, search.getTerminalState(), tree, search.game);
+	}
+}
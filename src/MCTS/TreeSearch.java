@@ -0,0 +1,104 @@
+package MCTS;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One of the threads of a tree-parallel search. Every thread simulates from
+ * the same node of the same tree, taking simulations from a shared count until
+ * none are left. Each selected action is given a virtual loss until its
+ * simulation is backed up, so the threads spread over different lines instead
+ * of all following the current best one.
+ *
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class TreeSearch implements Callable<Integer> {
+
+	/**
+	 * The tree shared by every thread of the search.
+	 */
+	MCTree tree;
+
+	/**
+	 * The game of the tree.
+	 */
+	DotsAndBoxes game;
+
+	/**
+	 * The state at which simulations end.
+	 */
+	GameState terminalState;
+
+	/**
+	 * The node of the tree at the current position.
+	 */
+	MCNode node;
+
+	/**
+	 * The net score of the player to move at node.
+	 */
+	int score;
+
+	/**
+	 * The simulations left to the search, shared by every thread.
+	 */
+	AtomicInteger remaining;
+
+	/**
+	 * The virtual loss given to each selected action.
+	 */
+	int virtualLoss;
+
+	/**
+	 * The time (as given by System.nanoTime) at which the search stops, or
+	 * Long.MAX_VALUE.
+	 */
+	long deadline = Long.MAX_VALUE;
+
+	/**
+	 * Constructor for the TreeSearch.
+	 *
+	 * @param tree
+	 *            The tree to be searched.
+	 * @param game
+	 *            The game of the tree.
+	 * @param remaining
+	 *            The simulations left to the search, shared by every thread.
+	 */
+	public TreeSearch(MCTree tree, DotsAndBoxes game, AtomicInteger remaining) {
+		this.tree = tree;
+		this.game = game;
+		this.remaining = remaining;
+	}
+
+	/**
+	 * Makes simulations until the shared count runs out, stopping early if the
+	 * result of the node is proven or the deadline has passed.
+	 *
+	 * @return The number of simulations made by this thread.
+	 */
+	public Integer call() {
+		SimulationContext context = tree.search.getContext(game);
+		context.virtualLoss = virtualLoss;
+
+		int made = 0;
+
+		try {
+			while (node.getProof(score) == MCNode.PROVEN_NONE && remaining.getAndDecrement() > 0) {
+				tree.search.simulate(node.state, score, node, terminalState, tree, game);
+				made++;
+
+				if (made % tree.search.timeCheck == 0 && System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+		} finally {
+			context.virtualLoss = 0;
+		}
+
+		return made;
+	}
+}
@@ -0,0 +1,21 @@
+package MCTS;
+
+/**
+ * The UCB1 selection policy. The uncertainty bonus of an action is c * sqrt(ln N(s) / N(s,a)).
+ * 
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class UCB1Policy implements SelectionPolicy {
+
+	/**
+	 * Gets the average reward of the action plus the UCB1 bonus.
+	 * 
+	 * @see MCTS.SelectionPolicy#getValue(double, MCTS.MCNode.ActionLink, int, double)
+	 */
+	public double getValue(double mean, MCNode.ActionLink link, int timesReached, double c) {
+		return mean + c * Math.sqrt(Math.log(timesReached) / link.getSelectionCount());
+	}
+}
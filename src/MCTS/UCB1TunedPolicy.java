@@ -0,0 +1,33 @@
+package MCTS;
+
+/**
+ * The UCB1-Tuned selection policy. The UCB1 bonus is scaled by an upper bound on the variance of the rewards
+ * of the action, so actions with consistent results are explored less.
+ * 
+ * @author Jared Prince
+ * @version 1.0
+ * @since 1.0
+ */
+
+public class UCB1TunedPolicy implements SelectionPolicy {
+
+	/**
+	 * Gets the average reward of the action plus the UCB1-Tuned bonus. Since rewards range from -1 to 1, the
+	 * variance is bounded by 1 rather than 1/4.
+	 * 
+	 * @see MCTS.SelectionPolicy#getValue(double, MCTS.MCNode.ActionLink, int, double)
+	 */
+	public double getValue(double mean, MCNode.ActionLink link, int timesReached, double c) {
+		double n = link.getSelectionCount();
+		double logN = Math.log(timesReached);
+
+		/* the sample variance of the action's own rewards (without virtual losses), at most 1 before any */
+		double chosen = link.getTimesChosen();
+		double average = link.getRewards() / chosen;
+		double variance = chosen == 0 ? 1 : Math.max(0, (link.getSquaredRewards() / chosen) - (average * average));
+
+		double bound = variance + Math.sqrt(2 * logN / n);
+
+		return mean + c * Math.sqrt((logN / n) * Math.min(1, bound));
+	}
+}
@@ -9,8 +9,163 @@ package Tools;
 
 public class FindWinner {
 
+	// the key of a board which cannot be encoded in a long
+	public static final long NO_KEY = -1;
+
+	// returned by getCachedValue when a board is not in the cache
+	public static final int NOT_CACHED = Integer.MIN_VALUE;
+
+	// the cache holds 2^CACHE_BITS values
+	private static final int CACHE_BITS = 16;
+
+	// each entry is stored as (key ^ data, data) so a torn write between threads is never read as a hit
+	private static final long[] cacheChecks = new long[1 << CACHE_BITS];
+	private static final long[] cacheData = new long[1 << CACHE_BITS];
+
+	// returns the value of any simple loony endgame (sorted chains of 3 or more, sorted loops of 4 or more),
+	// using the cache when possible. this is exact: getValue and theorem12 give wrong values for some boards
+	public static int getCachedValue(int[] chains, int[] loops) {
+		long key = getKey(chains, loops);
+
+		int value = getCachedValue(key);
+
+		if (value != NOT_CACHED) {
+			return value;
+		}
+
+		value = solve(chains, loops);
+
+		cacheValue(key, value);
+
+		return value;
+	}
+
+	// returns the value of a simple loony endgame by trying every component the player to move could open.
+	// the controller either takes the whole component and moves next, or declines the last 2 boxes of a chain
+	// (4 of a loop) and stays in control. the smaller boards reached are looked up in the cache.
+	public static int solve(int[] chains, int[] loops) {
+		if (chains.length == 0 && loops.length == 0) {
+			return 0;
+		}
+
+		int best = Integer.MAX_VALUE;
+
+		for (int i = 0; i < chains.length; i++) {
+			if (i > 0 && chains[i] == chains[i - 1]) {
+				continue;
+			}
+
+			int rest = getCachedValue(remove(chains, i), loops);
+			best = Math.min(best, Math.max(chains[i] - rest, chains[i] - 4 + rest));
+		}
+
+		for (int i = 0; i < loops.length; i++) {
+			if (i > 0 && loops[i] == loops[i - 1]) {
+				continue;
+			}
+
+			int rest = getCachedValue(chains, remove(loops, i));
+			best = Math.min(best, Math.max(loops[i] - rest, loops[i] - 8 + rest));
+		}
+
+		return best;
+	}
+
+	// returns the lengths without the one at the given index
+	private static int[] remove(int[] lengths, int index) {
+		int[] k = new int[lengths.length - 1];
+		System.arraycopy(lengths, 0, k, 0, index);
+		System.arraycopy(lengths, index + 1, k, index, k.length - index);
+
+		return k;
+	}
+
+	// returns a key which is unique to the sorted chains and loops: the lengths in 6 bits each, with a 0
+	// between the chains and the loops, or NO_KEY if the board has a length over 63 or more than 9 components
+	public static long getKey(int[] chains, int[] loops) {
+		if (chains.length + loops.length > 9) {
+			return NO_KEY;
+		}
+
+		long key = 0;
+
+		for (int c : chains) {
+			if (c > 63) {
+				return NO_KEY;
+			}
+
+			key = (key << 6) | c;
+		}
+
+		key <<= 6;
+
+		for (int l : loops) {
+			if (l > 63) {
+				return NO_KEY;
+			}
+
+			key = (key << 6) | l;
+		}
+
+		return key;
+	}
+
+	// returns the cached value of the board with the given key, or NOT_CACHED
+	public static int getCachedValue(long key) {
+		if (key == NO_KEY) {
+			return NOT_CACHED;
+		}
+
+		int index = getCacheIndex(key);
+		long data = cacheData[index];
+
+		// an empty entry has no low bit
+		if ((data & 1) == 0 || (cacheChecks[index] ^ data) != key) {
+			return NOT_CACHED;
+		}
+
+		return (int) (data >> 1);
+	}
+
+	// stores the value of the board with the given key, replacing any value in its entry
+	public static void cacheValue(long key, int value) {
+		if (key == NO_KEY) {
+			return;
+		}
+
+		int index = getCacheIndex(key);
+		long data = ((long) value << 1) | 1;
+
+		cacheData[index] = data;
+		cacheChecks[index] = key ^ data;
+	}
+
+	// returns the entry of the cache for a key
+	private static int getCacheIndex(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+
+		return (int) (key >>> (64 - CACHE_BITS));
+	}
+
+	// returns the loops which are not of length 4, given the number of loops of length 4
+	private static int[] removeFours(int[] loops, int f) {
+		int[] k = new int[loops.length - f];
+		int skip = 0;
+		for (int i = 0; i < loops.length; i++) {
+			if (loops[i] != 4) {
+				k[i - skip] = loops[i];
+			} else {
+				skip++;
+			}
+		}
+
+		return k;
+	}
+
 	// this is algorithm #1 (4.1)
 	// returns the value of a board
+	// deprecated: wrong for some boards, use getCachedValue, which is exact
+	@Deprecated
 	public static int getValue(int[] chains, int[] loops) {
 		int minChain = chains[0];
 
@@ -67,10 +222,10 @@ public class FindWinner {
 		int tb = 0;
 
 		// set the terminal bonus
-		if (loops.length == 0 || chains[chains.length - 1] > 3) {
-			tb = 4;
-		} else if (chains.length == 0) {
+		if (chains.length == 0) {
 			tb = 8;
+		} else if (loops.length == 0 || chains[chains.length - 1] > 3) {
+			tb = 4;
 		} else {
 			tb = 6;
 		}
@@ -92,15 +247,22 @@ public class FindWinner {
 			}
 
 			else {
-				return c % 2;
+				return Math.floorMod(c, 2);
 			}
 		}
 	}
 
+	// returns the value of a board with only loops
+	// deprecated: wrong for some boards, use getCachedValue, which is exact
+	@Deprecated
 	public static int theorem12(int[] loops) {
+		if (loops.length == 0) {
+			return 0;
+		}
+
 		int maxLoop = loops[loops.length - 1];
 
-		int[] tempChain = { 0 };
+		int[] tempChain = {};
 
 		int c = getCV(tempChain, loops);
 
@@ -122,20 +284,12 @@ public class FindWinner {
 
 		// part c
 		else if (c <= 0 && f == 0) {
-			return c % 4;
+			return Math.floorMod(c, 4);
 		}
 
 		// part d
 		else {
-			int[] k = new int[loops.length - f];
-			int skip = 0;
-			for (int i = 0; i < loops.length; i++) {
-				if (loops[i] != 4) {
-					k[i - skip] = loops[i];
-				} else {
-					skip++;
-				}
-			}
+			int[] k = removeFours(loops, f);
 
 			int vK = theorem12(k);
 
@@ -164,30 +318,22 @@ public class FindWinner {
 		}
 
 		// part b
-		else if (c <= 1 && c % 2 == 1 && f == 0) {
+		else if (c <= 1 && Math.floorMod(c, 2) == 1 && f == 0) {
 			return 3;
 		}
 
 		// part c
-		else if (c <= 1 && c % 2 == 0 && f == 0) {
-			return c % 4;
+		else if (c <= 1 && Math.floorMod(c, 2) == 0 && f == 0) {
+			return Math.floorMod(c, 4);
 		}
 
 		// part d
 		else {
-			int[] k = new int[loops.length - f];
-			int skip = 0;
-			for (int i = 0; i < loops.length; i++) {
-				if (loops[i] != 4) {
-					k[i - skip] = loops[i];
-				} else {
-					skip++;
-				}
-			}
+			int[] k = removeFours(loops, f);
 
 			int vK = corollary22(chains, k);
 
-			int d = vK % 8;
+			int d = Math.floorMod(vK, 8);
 
 			if (f % 2 == 1) {
 				return Math.abs(4 - d);
@@ -227,19 +373,11 @@ public class FindWinner {
 
 		// part d
 		else {
-			int[] m = new int[loops.length - f];
-			int skip = 0;
-			for (int i = 0; i < loops.length; i++) {
-				if (loops[i] != 4) {
-					m[i - skip] = loops[i];
-				} else {
-					skip++;
-				}
-			}
+			int[] m = removeFours(loops, f);
 
 			int vM = corollary22(chains, m);
 
-			int d = vM % 8;
+			int d = Math.floorMod(vM, 8);
 
 			if (f % 2 == 1) {
 				return Math.abs(4 - d);
@@ -266,17 +404,9 @@ public class FindWinner {
 		}
 
 		// part b
-		else if (c % 2 == 0) {
+		else if (Math.floorMod(c, 2) == 0) {
 			if (f > 0) {
-				int[] k = new int[loops.length - f];
-				int skip = 0;
-				for (int i = 0; i < loops.length; i++) {
-					if (loops[i] != 4) {
-						k[i - skip] = loops[i];
-					} else {
-						skip++;
-					}
-				}
+				int[] k = removeFours(loops, f);
 
 				int tempCV = getCV(chains, k);
 
@@ -316,19 +446,11 @@ public class FindWinner {
 			}
 
 			else {
-				int[] q = new int[loops.length - f];
-				int skip = 0;
-				for (int i = 0; i < loops.length; i++) {
-					if (loops[i] != 4) {
-						q[i - skip] = loops[i];
-					} else {
-						skip++;
-					}
-				}
+				int[] q = removeFours(loops, f);
 
 				int vQ = corollary27(chains, q);
 
-				int d = vQ % 8;
+				int d = Math.floorMod(vQ, 8);
 
 				if (f % 2 == 1) {
 					return Math.abs(4 - d);
@@ -357,16 +479,8 @@ public class FindWinner {
 
 		else {
 			// part b
-			if (cv % 2 == 0) {
-				int[] k = new int[loops.length - f];
-				int skip = 0;
-				for (int i = 0; i < loops.length; i++) {
-					if (loops[i] != 4) {
-						k[i - skip] = loops[i];
-					} else {
-						skip++;
-					}
-				}
+			if (Math.floorMod(cv, 2) == 0) {
+				int[] k = removeFours(loops, f);
 
 				int tempCV = getCV(chains, k);
 